@@ -0,0 +1,76 @@
+package ch.zhaw.prog2.account;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of lock based (TransferEngine) vs. lock-free (AtomicAccount) transfers,
+ * with rising contention on a single hot account.
+ * hotShare is the share of the transfers which debit the hot account (account 0),
+ * the other transfers use two random accounts.
+ * Run with different thread counts, e.g. gradle jmh -PjmhInclude=HotAccount (8 threads by default).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Threads(8)
+public class HotAccountBenchmark {
+    private static final int HOT_INITIAL_AMOUNT = 1_000_000_000;
+    private static final int INITIAL_AMOUNT = 1_000_000;
+
+    @Param({"0.0", "0.25", "0.5", "0.9", "1.0"})
+    public double hotShare;
+
+    @Param({"1024"})
+    public int accountCount;
+
+    private TransferEngine engine;
+    private Account[] accounts;
+    private AtomicAccount[] atomicAccounts;
+
+    @Setup(Level.Iteration)
+    public void createAccounts() {
+        engine = new TransferEngine();
+        accounts = new Account[accountCount];
+        atomicAccounts = new AtomicAccount[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            int amount = i == 0 ? HOT_INITIAL_AMOUNT : INITIAL_AMOUNT;
+            accounts[i] = new Account(i, amount);
+            atomicAccounts[i] = new AtomicAccount(i, amount);
+        }
+    }
+
+    private int fromIndex(ThreadLocalRandom random) {
+        return random.nextDouble() < hotShare ? 0 : random.nextInt(accountCount);
+    }
+
+    private int toIndex(ThreadLocalRandom random, int from) {
+        int to = random.nextInt(accountCount - 1);
+        return to >= from ? to + 1 : to; // never the same account
+    }
+
+    @Benchmark
+    public boolean lockedTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = fromIndex(random);
+        return engine.transfer(accounts[from], accounts[toIndex(random, from)], 1);
+    }
+
+    @Benchmark
+    public boolean atomicTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = fromIndex(random);
+        return AtomicAccount.transfer(atomicAccounts[from], atomicAccounts[toIndex(random, from)], 1);
+    }
+}
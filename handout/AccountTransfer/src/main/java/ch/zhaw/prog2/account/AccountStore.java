@@ -0,0 +1,199 @@
+package ch.zhaw.prog2.account;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory store of accounts, partitioned by id into shards with a lock each.
+ * Transfers lock only the shards of the two accounts (in ascending shard order,
+ * so they can not deadlock) and run in parallel otherwise.
+ * <p>
+ * Consistent snapshots are taken without stopping the writers: the store counts
+ * epochs, and a snapshot closes the current epoch. This needs all shard locks, but
+ * only for incrementing the epoch, so every transfer is either completely before
+ * or completely after the snapshot. When a transfer changes an account for the first
+ * time after the snapshot, it keeps the previous balance (copy-on-write). The snapshot
+ * then scans the shards one after the other, using the kept balance of all accounts
+ * changed in the meantime. Only the writers of the shard currently scanned wait.
+ */
+public class AccountStore {
+    private static final int DEFAULT_SHARDS = 64;
+
+    private final Shard[] shards;
+    private final int mask;
+    private final ReentrantLock snapshotLock = new ReentrantLock(); // one snapshot at a time
+    private volatile long epoch = 1; // only changed while holding all shard locks
+
+    private static class Shard {
+        final ReentrantLock lock = new ReentrantLock();
+        final Map<Integer, Entry> entries = new HashMap<>();
+    }
+
+    private static class Entry {
+        final Account account;
+        final long createdEpoch;
+        long changedEpoch;   // epoch of the last change
+        int previousSaldo;   // balance at the end of the epoch before changedEpoch
+
+        Entry(Account account, long epoch) {
+            this.account = account;
+            this.createdEpoch = epoch;
+            this.changedEpoch = epoch;
+            this.previousSaldo = account.getSaldo();
+        }
+
+        /* must be called before every change, with the lock of the shard held */
+        void beforeChange(long currentEpoch) {
+            if (changedEpoch < currentEpoch) {
+                previousSaldo = account.getSaldo();
+                changedEpoch = currentEpoch;
+            }
+        }
+
+        /* balance at the end of the given epoch */
+        int saldoAt(long snapshotEpoch) {
+            return changedEpoch > snapshotEpoch ? previousSaldo : account.getSaldo();
+        }
+    }
+
+    public AccountStore() {
+        this(DEFAULT_SHARDS);
+    }
+
+    /**
+     * @param shardCount number of shards, rounded up to a power of two
+     */
+    public AccountStore(int shardCount) {
+        if (shardCount <= 0 || shardCount > 1 << 30)
+            throw new IllegalArgumentException("invalid number of shards: " + shardCount);
+        int size = shardCount == 1 ? 1 : Integer.highestOneBit(shardCount - 1) << 1;
+        shards = new Shard[size];
+        for (int i = 0; i < size; i++)
+            shards[i] = new Shard();
+        mask = size - 1;
+    }
+
+    private int shardIndex(int id) {
+        int h = id * 0x9E3779B9; // spread consecutive ids over the shards
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    public void open(int id, int initialAmount) {
+        Shard shard = shards[shardIndex(id)];
+        shard.lock.lock();
+        try {
+            if (shard.entries.containsKey(id))
+                throw new IllegalArgumentException("account " + id + " already exists");
+            shard.entries.put(id, new Entry(new Account(id, initialAmount), epoch));
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    private static Entry lookup(Shard shard, int id) {
+        Entry entry = shard.entries.get(id);
+        if (entry == null)
+            throw new IllegalArgumentException("unknown account " + id);
+        return entry;
+    }
+
+    /**
+     * Transfers amount from one account to the other, if the balance is high enough.
+     *
+     * @return false if the balance of the from account was too low
+     */
+    public boolean transfer(int fromId, int toId, int amount) {
+        if (amount <= 0)
+            throw new IllegalArgumentException("amount must be positive");
+        if (fromId == toId)
+            throw new IllegalArgumentException("accounts must be different");
+        Shard fromShard = shards[shardIndex(fromId)];
+        Shard toShard = shards[shardIndex(toId)];
+        Shard first = shardIndex(fromId) <= shardIndex(toId) ? fromShard : toShard;
+        Shard second = first == fromShard ? toShard : fromShard;
+        first.lock.lock();
+        try {
+            if (second != first)
+                second.lock.lock();
+            try {
+                Entry fromEntry = lookup(fromShard, fromId);
+                Entry toEntry = lookup(toShard, toId);
+                if (fromEntry.account.getSaldo() < amount)
+                    return false;
+                // the epoch can not change while we hold a shard lock
+                long currentEpoch = epoch;
+                fromEntry.beforeChange(currentEpoch);
+                toEntry.beforeChange(currentEpoch);
+                fromEntry.account.changeSaldo(-amount);
+                toEntry.account.changeSaldo(amount);
+                return true;
+            } finally {
+                if (second != first)
+                    second.lock.unlock();
+            }
+        } finally {
+            first.lock.unlock();
+        }
+    }
+
+    public int getSaldo(int id) {
+        Shard shard = shards[shardIndex(id)];
+        shard.lock.lock();
+        try {
+            return lookup(shard, id).account.getSaldo();
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Sum of all balances at one point in time.
+     */
+    public long totalBalance() {
+        long total = 0;
+        for (int saldo : snapshot().values())
+            total += saldo;
+        return total;
+    }
+
+    /**
+     * Balances of all accounts at one point in time, by account id.
+     */
+    public Map<Integer, Integer> snapshot() {
+        snapshotLock.lock();
+        try {
+            long snapshotEpoch = closeEpoch();
+            Map<Integer, Integer> balances = new HashMap<>();
+            for (Shard shard : shards) {
+                shard.lock.lock();
+                try {
+                    for (Entry entry : shard.entries.values()) {
+                        if (entry.createdEpoch <= snapshotEpoch)
+                            balances.put(entry.account.getId(), entry.saldoAt(snapshotEpoch));
+                    }
+                } finally {
+                    shard.lock.unlock();
+                }
+            }
+            return balances;
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /* starts a new epoch and returns the closed one */
+    private long closeEpoch() {
+        int locked = 0;
+        try {
+            for (; locked < shards.length; locked++)
+                shards[locked].lock.lock();
+            long closed = epoch;
+            epoch = closed + 1;
+            return closed;
+        } finally {
+            for (int i = locked - 1; i >= 0; i--)
+                shards[i].lock.unlock();
+        }
+    }
+}
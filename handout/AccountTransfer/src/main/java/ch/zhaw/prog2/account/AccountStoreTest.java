@@ -0,0 +1,51 @@
+package ch.zhaw.prog2.account;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Runs random transfers on an AccountStore, while an auditor checks
+ * that the total balance of the live store never changes.
+ */
+public class AccountStoreTest {
+    public static void main(String[] args) throws InterruptedException {
+        final int accountCount = 100_000;
+        final int workerCount = 8;
+        final int transfersPerWorker = 1_000_000;
+
+        AccountStore store = new AccountStore();
+        for (int id = 0; id < accountCount; id++)
+            store.open(id, 100);
+        long expectedTotal = store.totalBalance();
+        System.out.println("Total at start: " + expectedTotal);
+
+        Thread[] workers = new Thread[workerCount];
+        for (int w = 0; w < workerCount; w++) {
+            workers[w] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < transfersPerWorker; i++) {
+                    int from = random.nextInt(accountCount);
+                    int to = (from + 1 + random.nextInt(accountCount - 1)) % accountCount;
+                    store.transfer(from, to, 1 + random.nextInt(50));
+                }
+            }, "Worker " + w);
+            workers[w].start();
+        }
+
+        int audits = 0;
+        int failedAudits = 0;
+        while (workers[0].isAlive()) {
+            long startTime = System.nanoTime();
+            long total = store.totalBalance();
+            audits++;
+            if (total != expectedTotal) {
+                failedAudits++;
+                System.out.println("Audit failed, total: " + total);
+            }
+            System.out.println("Audit " + audits + " took " + (System.nanoTime() - startTime) / 1000 + "us");
+            Thread.sleep(100);
+        }
+        for (Thread worker : workers)
+            worker.join();
+        System.out.println("Total at end: " + store.totalBalance() + ", failed audits: " + failedAudits);
+    }
+}
@@ -1,10 +1,15 @@
 package ch.zhaw.prog2.account;
 
+import java.util.List;
+
 public class AccountTransferTest {
     public static void main(String[] args) {
+        TransferEngine engine = new TransferEngine();
         Account account1 = new Account(1, 10);
         Account account2 = new Account(2, 10);
         Account account3 = new Account(3, 999999);
+        List<Account> accounts = List.of(account1, account2, account3);
+        long initialTotal = engine.totalSaldo(accounts);
 
 
         System.out.println("Start of Transaction");
@@ -16,11 +21,11 @@ public class AccountTransferTest {
             (account1.getSaldo() + account2.getSaldo() + account3.getSaldo()));
 
         AccountTransferThread t1 =
-            new AccountTransferThread("Worker 1", account3, account1, 1);
+            new AccountTransferThread("Worker 1", engine, account3, account1, 1);
         AccountTransferThread t2 =
-            new AccountTransferThread("Worker 2", account3, account2, 2);
+            new AccountTransferThread("Worker 2", engine, account3, account2, 2);
         AccountTransferThread t3 =
-            new AccountTransferThread("Worker 3", account2, account1, 1);
+            new AccountTransferThread("Worker 3", engine, account2, account1, 1);
 
         t1.start();
         t2.start();
@@ -44,5 +49,8 @@ public class AccountTransferTest {
         System.out.println("Total of account1 and account2 and account3: " +
             (account1.getSaldo() + account2.getSaldo() + account3.getSaldo()));
 
+        long finalTotal = engine.totalSaldo(accounts);
+        System.out.println("Total balance " + (finalTotal == initialTotal ? "unchanged" :
+            "CHANGED from " + initialTotal + " to " + finalTotal));
     }
 }
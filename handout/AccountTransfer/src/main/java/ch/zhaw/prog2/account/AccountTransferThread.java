@@ -2,13 +2,16 @@ package ch.zhaw.prog2.account;
 
 class AccountTransferThread extends Thread {
 
+    private TransferEngine engine;
     private Account fromAccount;
     private Account toAccount;
     private int amount;
     private int maxIter = 10000;
 
-    public AccountTransferThread(String name, Account fromAccount, Account toAccount, int amount) {
+    public AccountTransferThread(String name, TransferEngine engine,
+                                 Account fromAccount, Account toAccount, int amount) {
         super(name);
+        this.engine = engine;
         this.fromAccount = fromAccount;
         this.toAccount = toAccount;
         this.amount = amount;
@@ -16,11 +19,8 @@ class AccountTransferThread extends Thread {
 
     /*  Transfer amount from fromAccount to toAccount */
     public void accountTransfer() {
-        // Account must not be overdrawn
-        if (fromAccount.getSaldo() >= amount) {
-            fromAccount.changeSaldo(-amount);
-            toAccount.changeSaldo(amount);
-        }
+        // Account must not be overdrawn, the engine checks and transfers atomically
+        engine.transfer(fromAccount, toAccount, amount);
     }
 
     @Override
@@ -0,0 +1,95 @@
+package ch.zhaw.prog2.account;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Account whose balance is updated lock-free with atomic operations.
+ * Debits use a compare-and-set retry loop, so the balance never gets negative,
+ * credits only fail if the balance would overflow.
+ * This avoids serializing all threads on a lock when many of them use the same (hot) account.
+ */
+public class AtomicAccount {
+    private final int id;
+    private final AtomicInteger saldo;
+
+    public AtomicAccount(int id, int initialAmount) {
+        this.id = id;
+        this.saldo = new AtomicInteger(initialAmount);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getSaldo() {
+        return saldo.get();
+    }
+
+    /* unchecked change of the balance, may result in a negative balance */
+    public void changeSaldo(int delta) {
+        saldo.getAndAdd(delta);
+    }
+
+    /**
+     * Withdraws the amount, if the balance is high enough.
+     *
+     * @return false if the balance was too low
+     */
+    public boolean tryDebit(int amount) {
+        checkAmount(amount);
+        int current = saldo.get();
+        while (current >= amount) {
+            // only succeeds if no other thread changed the balance in between
+            int witness = saldo.compareAndExchange(current, current - amount);
+            if (witness == current)
+                return true;
+            current = witness;
+        }
+        return false;
+    }
+
+    /**
+     * Deposits the amount.
+     *
+     * @throws ArithmeticException if the balance would overflow, the balance is not changed in this case
+     */
+    public void credit(int amount) {
+        checkAmount(amount);
+        int current = saldo.get();
+        while (true) {
+            if (current > Integer.MAX_VALUE - amount)
+                throw new ArithmeticException("balance overflow of account " + id);
+            int witness = saldo.compareAndExchange(current, current + amount);
+            if (witness == current)
+                return;
+            current = witness;
+        }
+    }
+
+    private static void checkAmount(int amount) {
+        if (amount <= 0)
+            throw new IllegalArgumentException("amount must be positive");
+    }
+
+    /**
+     * Transfers the amount in two phases: first it is debited from fromAccount (which
+     * may fail), then it is credited to toAccount. Between the two phases the amount is
+     * in neither account, so a concurrent sum over all accounts may be too low,
+     * but no account is ever overdrawn and no money is lost.
+     *
+     * @return false if the balance of fromAccount was too low
+     * @throws ArithmeticException if the balance of toAccount would overflow, the amount is given back
+     */
+    public static boolean transfer(AtomicAccount fromAccount, AtomicAccount toAccount, int amount) {
+        checkAmount(amount);
+        if (!fromAccount.tryDebit(amount))
+            return false;
+        try {
+            toAccount.credit(amount);
+        } catch (ArithmeticException e) {
+            fromAccount.credit(amount);
+            throw e;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,44 @@
+package ch.zhaw.prog2.account;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The kinds of executors the load generator can submit the transfers to.
+ */
+public enum ExecutorKind {
+    /** fixed pool of platform threads */
+    FIXED {
+        public ExecutorService create(int threads) {
+            return Executors.newFixedThreadPool(threads);
+        }
+    },
+    /** work-stealing fork/join pool */
+    FORK_JOIN {
+        public ExecutorService create(int threads) {
+            return new ForkJoinPool(threads);
+        }
+    },
+    /** one new virtual thread per task, the number of threads is ignored */
+    VIRTUAL {
+        public ExecutorService create(int threads) {
+            // looked up by reflection, as virtual threads are not available before Java 21
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new UnsupportedOperationException(
+                    "virtual threads are not supported by Java " + Runtime.version().feature(), e);
+            }
+        }
+    };
+
+    /**
+     * Creates a new executor of this kind.
+     *
+     * @throws UnsupportedOperationException if the kind is not supported by this Java runtime
+     */
+    public abstract ExecutorService create(int threads);
+}
@@ -0,0 +1,52 @@
+package ch.zhaw.prog2.account;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Transfers between any number of accounts, which are executed all together or not at all
+ * by {@link TransferEngine#execute(Transaction)}, e.g. a payroll from one account to many.
+ * The legs are added one after the other:
+ * <pre>
+ *     Transaction payroll = new Transaction()
+ *         .transfer(company, alice, 5000)
+ *         .transfer(company, bob, 4800);
+ * </pre>
+ */
+public class Transaction {
+    private final List<Leg> legs = new ArrayList<>();
+
+    /**
+     * A single transfer of a transaction.
+     */
+    public static class Leg {
+        public final Account fromAccount;
+        public final Account toAccount;
+        public final int amount;
+
+        Leg(Account fromAccount, Account toAccount, int amount) {
+            this.fromAccount = fromAccount;
+            this.toAccount = toAccount;
+            this.amount = amount;
+        }
+    }
+
+    /**
+     * Adds a leg transferring amount from fromAccount to toAccount.
+     *
+     * @return this transaction
+     */
+    public Transaction transfer(Account fromAccount, Account toAccount, int amount) {
+        if (amount <= 0)
+            throw new IllegalArgumentException("amount must be positive");
+        if (fromAccount == toAccount)
+            throw new IllegalArgumentException("accounts must be different");
+        legs.add(new Leg(fromAccount, toAccount, amount));
+        return this;
+    }
+
+    public List<Leg> getLegs() {
+        return Collections.unmodifiableList(legs);
+    }
+}
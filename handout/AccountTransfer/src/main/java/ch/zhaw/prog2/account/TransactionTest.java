@@ -0,0 +1,67 @@
+package ch.zhaw.prog2.account;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Several threads execute payroll transactions from a few company accounts to
+ * overlapping groups of employee accounts, while the employees transfer money
+ * among themselves. In the end the total must be unchanged.
+ */
+public class TransactionTest {
+    public static void main(String[] args) throws InterruptedException {
+        final int companyCount = 4;
+        final int employeeCount = 1000;
+        final int legsPerPayroll = 200;
+        final int payrollsPerThread = 2000;
+
+        TransferEngine engine = new TransferEngine();
+        List<Account> companies = new ArrayList<>();
+        List<Account> employees = new ArrayList<>();
+        for (int id = 0; id < companyCount; id++)
+            companies.add(new Account(id, 100_000_000));
+        for (int id = 0; id < employeeCount; id++)
+            employees.add(new Account(companyCount + id, 0));
+        List<Account> all = new ArrayList<>(companies);
+        all.addAll(employees);
+        long totalAtStart = engine.totalSaldo(all);
+
+        List<Thread> threads = new ArrayList<>();
+        for (Account company : companies) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int failed = 0;
+                for (int i = 0; i < payrollsPerThread; i++) {
+                    Transaction payroll = new Transaction();
+                    int first = random.nextInt(employeeCount);
+                    for (int leg = 0; leg < legsPerPayroll; leg++)
+                        payroll.transfer(company, employees.get((first + leg) % employeeCount), 1 + random.nextInt(100));
+                    if (!engine.execute(payroll))
+                        failed++;
+                }
+                System.out.println("Payrolls of company " + company.getId() + " done, " + failed + " failed");
+            }));
+        }
+        threads.add(new Thread(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < 1_000_000; i++) {
+                Account from = employees.get(random.nextInt(employeeCount));
+                Account to = employees.get(random.nextInt(employeeCount));
+                if (from != to)
+                    engine.transfer(from, to, 1 + random.nextInt(100));
+            }
+            System.out.println("Employee transfers done");
+        }));
+
+        long startTime = System.nanoTime();
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+        System.out.println("Time: " + (System.nanoTime() - startTime) / 1_000_000 + "ms");
+
+        long totalAtEnd = engine.totalSaldo(all);
+        System.out.println("Total " + (totalAtEnd == totalAtStart ? "unchanged: " : "CHANGED: ") + totalAtEnd);
+    }
+}
@@ -0,0 +1,169 @@
+package ch.zhaw.prog2.account;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Transfers money between accounts without overdrawing them.
+ * Every account is guarded by one of a fixed number of locks (lock striping),
+ * selected by the id of the account. Transfers between accounts on different
+ * stripes run in parallel, and the memory used does not grow with the number of accounts.
+ * <p>
+ * To prevent deadlocks, the locks are always acquired in ascending stripe order,
+ * which is the global order derived from the account ids. (Ordering by the ids
+ * themselves is not enough, as two accounts may share the same stripe.)
+ * All access to the balances must go through the engine.
+ */
+public class TransferEngine {
+    private static final int DEFAULT_STRIPES = 1024;
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    public TransferEngine() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes number of locks, rounded up to a power of two
+     */
+    public TransferEngine(int stripes) {
+        if (stripes <= 0 || stripes > 1 << 30)
+            throw new IllegalArgumentException("invalid number of stripes: " + stripes);
+        int size = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++)
+            locks[i] = new ReentrantLock();
+        this.mask = size - 1;
+    }
+
+    int stripe(Account account) {
+        int h = account.getId() * 0x9E3779B9; // spread consecutive ids over the stripes
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Transfers amount from fromAccount to toAccount, if fromAccount has enough money.
+     *
+     * @return false if the balance of fromAccount was too low
+     * @throws ArithmeticException if the balance of toAccount would overflow, nothing is changed in this case
+     */
+    public boolean transfer(Account fromAccount, Account toAccount, int amount) {
+        if (amount <= 0)
+            throw new IllegalArgumentException("amount must be positive");
+        if (fromAccount == toAccount)
+            throw new IllegalArgumentException("accounts must be different");
+        int first = stripe(fromAccount);
+        int second = stripe(toAccount);
+        if (first > second) {
+            int swap = first;
+            first = second;
+            second = swap;
+        }
+        locks[first].lock();
+        try {
+            if (second != first)
+                locks[second].lock();
+            try {
+                // check and update are done atomically under the locks
+                if (fromAccount.getSaldo() < amount)
+                    return false;
+                if (toAccount.getSaldo() > Integer.MAX_VALUE - amount)
+                    throw new ArithmeticException("balance overflow of account " + toAccount.getId());
+                fromAccount.changeSaldo(-amount);
+                toAccount.changeSaldo(amount);
+                return true;
+            } finally {
+                if (second != first)
+                    locks[second].unlock();
+            }
+        } finally {
+            locks[first].unlock();
+        }
+    }
+
+    public int getSaldo(Account account) {
+        ReentrantLock lock = locks[stripe(account)];
+        lock.lock();
+        try {
+            return account.getSaldo();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Executes all legs of the transaction atomically, if none of the accounts gets overdrawn.
+     * The legs are checked against the net change of every account, so an account may pass on
+     * money it receives in the same transaction. The stripes of all involved accounts are
+     * locked in ascending order, so transactions with overlapping accounts can not deadlock,
+     * and transactions with disjoint stripes run in parallel.
+     *
+     * @return false if an account would have been overdrawn, nothing is changed in this case
+     */
+    public boolean execute(Transaction transaction) {
+        Map<Account, Long> changes = new IdentityHashMap<>();
+        for (Transaction.Leg leg : transaction.getLegs()) {
+            changes.merge(leg.fromAccount, (long) -leg.amount, Long::sum);
+            changes.merge(leg.toAccount, (long) leg.amount, Long::sum);
+        }
+        int[] stripes = sortedStripes(changes.keySet());
+        lockAll(stripes);
+        try {
+            for (Map.Entry<Account, Long> change : changes.entrySet()) {
+                long saldo = change.getKey().getSaldo() + change.getValue();
+                if (saldo < 0)
+                    return false;
+                if (saldo > Integer.MAX_VALUE)
+                    throw new ArithmeticException("balance overflow of account " + change.getKey().getId());
+            }
+            for (Map.Entry<Account, Long> change : changes.entrySet())
+                change.getKey().changeSaldo(change.getValue().intValue());
+            return true;
+        } finally {
+            unlockAll(stripes, stripes.length);
+        }
+    }
+
+    /**
+     * Sums up the balances of the given accounts. All involved stripes are locked
+     * (in ascending order) during the summation, so the total is consistent.
+     */
+    public long totalSaldo(Collection<Account> accounts) {
+        int[] stripes = sortedStripes(accounts);
+        lockAll(stripes);
+        try {
+            long total = 0;
+            for (Account account : accounts)
+                total += account.getSaldo();
+            return total;
+        } finally {
+            unlockAll(stripes, stripes.length);
+        }
+    }
+
+    private int[] sortedStripes(Collection<Account> accounts) {
+        int[] stripes = accounts.stream().mapToInt(this::stripe).distinct().toArray();
+        Arrays.sort(stripes);
+        return stripes;
+    }
+
+    private void lockAll(int[] stripes) {
+        int locked = 0;
+        try {
+            for (; locked < stripes.length; locked++)
+                locks[stripes[locked]].lock();
+        } catch (RuntimeException | Error e) {
+            unlockAll(stripes, locked);
+            throw e;
+        }
+    }
+
+    private void unlockAll(int[] stripes, int count) {
+        for (int i = count - 1; i >= 0; i--)
+            locks[stripes[i]].unlock();
+    }
+}
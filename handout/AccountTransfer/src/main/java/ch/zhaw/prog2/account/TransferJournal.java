@@ -0,0 +1,137 @@
+package ch.zhaw.prog2.account;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the changes to the accounts.
+ * The entries are collected in memory and written as one batch by {@link #commit()},
+ * with a single fsync per batch (group commit).
+ * <p>
+ * File format: a sequence of batches, each consisting of
+ * <pre>
+ *   int length, long crc32, entries (length bytes)
+ *   entry: byte type, then OPEN: int id, int amount / TRANSFER: int from, int to, int amount
+ * </pre>
+ * A batch which was not written completely (e.g. on a crash) fails the checksum and
+ * is ignored together with everything after it.
+ */
+class TransferJournal implements AutoCloseable {
+    private static final byte OPEN = 1;
+    private static final byte TRANSFER = 2;
+    private static final int BATCH_HEADER = Integer.BYTES + Long.BYTES;
+    private static final int MAX_ENTRY = 1 + 3 * Integer.BYTES;
+
+    private final FileChannel channel;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer batch = ByteBuffer.allocate(64 * 1024);
+
+    /**
+     * Opens the journal for appending, after the last valid batch.
+     */
+    TransferJournal(Path file, long validLength) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(validLength); // drop a partially written batch
+        channel.position(validLength);
+        batch.position(BATCH_HEADER);
+    }
+
+    private void ensureCapacity() {
+        if (batch.remaining() < MAX_ENTRY) {
+            ByteBuffer larger = ByteBuffer.allocate(2 * batch.capacity());
+            batch.flip();
+            larger.put(batch);
+            batch = larger;
+        }
+    }
+
+    void writeOpen(int id, int amount) {
+        ensureCapacity();
+        batch.put(OPEN).putInt(id).putInt(amount);
+    }
+
+    void writeTransfer(int fromId, int toId, int amount) {
+        ensureCapacity();
+        batch.put(TRANSFER).putInt(fromId).putInt(toId).putInt(amount);
+    }
+
+    /**
+     * Writes the collected entries and forces them to the disk.
+     */
+    void commit() throws IOException {
+        int length = batch.position() - BATCH_HEADER;
+        if (length == 0)
+            return;
+        crc.reset();
+        crc.update(batch.array(), BATCH_HEADER, length);
+        batch.putInt(0, length).putLong(Integer.BYTES, crc.getValue());
+        batch.flip();
+        while (batch.hasRemaining())
+            channel.write(batch);
+        channel.force(false);
+        batch.clear().position(BATCH_HEADER);
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Rebuilds the accounts by replaying all valid batches of the journal.
+     * The journal is read batch by batch, so only one batch is in memory at a time.
+     *
+     * @return length of the valid part of the journal
+     */
+    static long replay(Path file, Map<Integer, Account> accounts) throws IOException {
+        if (!Files.exists(file))
+            return 0;
+        long fileLength = Files.size(file);
+        long position = 0;
+        byte[] entries = new byte[64 * 1024];
+        CRC32 checksum = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (fileLength - position >= BATCH_HEADER) {
+                int length = in.readInt();
+                long expected = in.readLong();
+                if (length <= 0 || length > fileLength - position - BATCH_HEADER)
+                    return position;
+                if (length > entries.length)
+                    entries = new byte[Math.max(length, 2 * entries.length)];
+                in.readFully(entries, 0, length);
+                checksum.reset();
+                checksum.update(entries, 0, length);
+                if (checksum.getValue() != expected)
+                    return position;
+                applyBatch(ByteBuffer.wrap(entries, 0, length), accounts);
+                position += BATCH_HEADER + length;
+            }
+        }
+        return position;
+    }
+
+    private static void applyBatch(ByteBuffer entries, Map<Integer, Account> accounts) throws IOException {
+        while (entries.hasRemaining()) {
+            byte type = entries.get();
+            if (type == OPEN) {
+                int id = entries.getInt();
+                accounts.put(id, new Account(id, entries.getInt()));
+            } else if (type == TRANSFER) {
+                Account fromAccount = accounts.get(entries.getInt());
+                Account toAccount = accounts.get(entries.getInt());
+                int amount = entries.getInt();
+                fromAccount.changeSaldo(-amount);
+                toAccount.changeSaldo(amount);
+            } else {
+                throw new IOException("corrupt journal, unknown entry type " + type);
+            }
+        }
+    }
+}
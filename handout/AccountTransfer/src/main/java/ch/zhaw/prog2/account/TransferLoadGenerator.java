@@ -0,0 +1,165 @@
+package ch.zhaw.prog2.account;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Submits random transfers between accounts to an executor and measures the result,
+ * so different executors can be compared on exactly the same workload.
+ * <p>
+ * The accounts of a transfer are drawn from a {@link ZipfSampler}, so a few accounts can be
+ * made hot. Each task may additionally block for some time after the transfer, which models
+ * waiting for I/O (e.g. a database or a remote service).
+ * <p>
+ * With a target rate, the transfers are started on a fixed schedule and the latency is
+ * measured from the scheduled start, not from the actual submission. Otherwise an overloaded
+ * executor would delay the submissions and hide its own queueing time (coordinated omission).
+ */
+public class TransferLoadGenerator {
+    private static final int MAX_IN_FLIGHT = 10_000;
+
+    private final TransferEngine engine;
+    private final List<Account> accounts;
+    private final ZipfSampler sampler;
+    private final int maxAmount;
+    private final long workNanos;
+
+    /**
+     * @param accounts    accounts to transfer between, the first ones are the hottest
+     * @param skew        exponent of the Zipf distribution, 0 for uniformly distributed accounts
+     * @param maxAmount   transfer amounts are uniformly distributed between 1 and maxAmount
+     * @param workMicros  time each task blocks after its transfer, 0 for none
+     */
+    public TransferLoadGenerator(TransferEngine engine, List<Account> accounts, double skew,
+                                 int maxAmount, long workMicros) {
+        if (accounts.size() < 2)
+            throw new IllegalArgumentException("at least two accounts are needed");
+        if (maxAmount <= 0)
+            throw new IllegalArgumentException("maxAmount must be positive");
+        this.engine = engine;
+        this.accounts = List.copyOf(accounts);
+        this.sampler = new ZipfSampler(accounts.size(), skew);
+        this.maxAmount = maxAmount;
+        this.workNanos = TimeUnit.MICROSECONDS.toNanos(workMicros);
+    }
+
+    /**
+     * Runs the given number of transfers on a new executor of the given kind and shuts it down afterwards.
+     *
+     * @param threads    number of threads of the executor (ignored for virtual threads)
+     * @param targetRate transfers to start per second, 0 to start them as fast as possible
+     * @throws UnsupportedOperationException if the executor kind is not supported by this Java runtime
+     */
+    public Report run(ExecutorKind kind, int threads, int transfers, double targetRate) throws InterruptedException {
+        ExecutorService executor = kind.create(threads);
+        try {
+            return run(executor, transfers, targetRate);
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Runs the given number of transfers on the given executor and waits until all are done.
+     */
+    public Report run(ExecutorService executor, int transfers, double targetRate) throws InterruptedException {
+        LatencyHistogram latencies = new LatencyHistogram();
+        LongAdder completed = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        LongAdder failed = new LongAdder();
+        // limits the queued tasks when the executor can not keep up
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        long interval = targetRate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / targetRate) : 0;
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < transfers; i++) {
+            long scheduled = interval > 0 ? startTime + i * interval : System.nanoTime();
+            long delay;
+            while ((delay = scheduled - System.nanoTime()) > 0)
+                LockSupport.parkNanos(delay);
+            inFlight.acquire();
+            try {
+                executor.execute(() -> {
+                    try {
+                        if (transferRandomly())
+                            completed.increment();
+                        else
+                            rejected.increment();
+                        latencies.record(System.nanoTime() - scheduled);
+                        simulateWork();
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.release();
+                failed.increment();
+            }
+        }
+        inFlight.acquire(MAX_IN_FLIGHT); // wait until all tasks are done
+        long duration = System.nanoTime() - startTime;
+        return new Report(transfers, completed.sum(), rejected.sum(), failed.sum(), duration, latencies);
+    }
+
+    private boolean transferRandomly() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = sampler.next();
+        int to;
+        do {
+            to = sampler.next();
+        } while (to == from);
+        return engine.transfer(accounts.get(from), accounts.get(to), 1 + random.nextInt(maxAmount));
+    }
+
+    private void simulateWork() {
+        if (workNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(workNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Result of one run. The latency of a transfer is the time from its scheduled start
+     * until the transfer (without the simulated work) is done.
+     */
+    public static class Report {
+        public final int transfers;
+        public final long completed;
+        public final long rejected;       // insufficient funds
+        public final long failed;         // not accepted by the executor
+        public final long durationNanos;
+        public final LatencyHistogram latencies;
+
+        Report(int transfers, long completed, long rejected, long failed, long durationNanos,
+               LatencyHistogram latencies) {
+            this.transfers = transfers;
+            this.completed = completed;
+            this.rejected = rejected;
+            this.failed = failed;
+            this.durationNanos = durationNanos;
+            this.latencies = latencies;
+        }
+
+        /** transfers per second, including the rejected ones */
+        public double throughput() {
+            return (completed + rejected) * 1e9 / durationNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d transfers in %d ms: %.0f/s, %d completed, %d rejected, %d failed, latency %s",
+                transfers, TimeUnit.NANOSECONDS.toMillis(durationNanos), throughput(),
+                completed, rejected, failed, latencies.format());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package ch.zhaw.prog2.account;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the same transfer workload on every kind of executor and prints the reports.
+ * Usage: TransferLoadTest [accounts] [skew] [transfers] [rate/s] [workMicros] [threads]
+ */
+public class TransferLoadTest {
+    public static void main(String[] args) throws InterruptedException {
+        int accountCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        double skew = args.length > 1 ? Double.parseDouble(args[1]) : 1.0;
+        int transfers = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        double rate = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+        long workMicros = args.length > 4 ? Long.parseLong(args[4]) : 1000;
+        int threads = args.length > 5 ? Integer.parseInt(args[5])
+            : 4 * Runtime.getRuntime().availableProcessors();
+
+        TransferEngine engine = new TransferEngine();
+        List<Account> accounts = new ArrayList<>();
+        for (int id = 0; id < accountCount; id++)
+            accounts.add(new Account(id, 1000));
+        long totalAtStart = engine.totalSaldo(accounts);
+        TransferLoadGenerator generator = new TransferLoadGenerator(engine, accounts, skew, 100, workMicros);
+
+        System.out.printf("%d accounts, skew %.2f, %d transfers, rate %s, work %dus, %d threads%n",
+            accountCount, skew, transfers, rate > 0 ? rate + "/s" : "unlimited", workMicros, threads);
+        for (ExecutorKind kind : ExecutorKind.values()) {
+            try {
+                System.out.println(kind + ": " + generator.run(kind, threads, transfers, rate));
+            } catch (UnsupportedOperationException e) {
+                System.out.println(kind + ": skipped, " + e.getMessage());
+            }
+        }
+        long totalAtEnd = engine.totalSaldo(accounts);
+        System.out.println("Total " + (totalAtEnd == totalAtStart ? "unchanged: " : "CHANGED: ") + totalAtEnd);
+    }
+}
@@ -0,0 +1,246 @@
+package ch.zhaw.prog2.account;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Applies the transfers on a single writer thread, therefore the accounts need no locks at all.
+ * The submitted requests are queued, the writer takes them in batches, applies them
+ * and appends the changes of the whole batch to the journal with one fsync (group commit).
+ * The result of a request is completed when its batch is on the disk.
+ * On start, the balances are rebuilt by replaying the journal.
+ */
+public class TransferPipeline implements AutoCloseable {
+    private static final int QUEUE_CAPACITY = 64 * 1024;
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    private final Map<Integer, Account> accounts = new HashMap<>(); // only used by the writer
+    private final BlockingQueue<Request<?>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final TransferJournal journal;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public TransferPipeline(Path journalFile) throws IOException {
+        long validLength = TransferJournal.replay(journalFile, accounts);
+        journal = new TransferJournal(journalFile, validLength);
+        writer = new Thread(this::processBatches, "journal-writer");
+        writer.start();
+    }
+
+    /**
+     * Opens a new account. Fails if the id is already in use.
+     */
+    public CompletableFuture<Void> openAccount(int id, int initialAmount) throws InterruptedException {
+        return submit(new OpenRequest(id, initialAmount));
+    }
+
+    /**
+     * Transfers amount from one account to the other.
+     * The result is false if the balance of the from account was too low.
+     * Blocks if too many requests are waiting.
+     */
+    public CompletableFuture<Boolean> transfer(int fromId, int toId, int amount) throws InterruptedException {
+        if (amount <= 0)
+            throw new IllegalArgumentException("amount must be positive");
+        if (fromId == toId)
+            throw new IllegalArgumentException("accounts must be different");
+        return submit(new TransferRequest(fromId, toId, amount));
+    }
+
+    /**
+     * Reads the balance after all previously submitted requests were applied.
+     */
+    public CompletableFuture<Integer> getSaldo(int id) throws InterruptedException {
+        return submit(new SaldoRequest(id));
+    }
+
+    /**
+     * Reads the sum of all balances after all previously submitted requests were applied.
+     */
+    public CompletableFuture<Long> totalSaldo() throws InterruptedException {
+        return submit(new TotalRequest());
+    }
+
+    private <T> CompletableFuture<T> submit(Request<T> request) throws InterruptedException {
+        if (!running)
+            throw new IllegalStateException("pipeline is closed");
+        queue.put(request);
+        // close() or a failure of the writer may have emptied the queue before the request arrived;
+        // if the request cannot be removed anymore, it was taken by someone who completes it
+        if (!running && queue.remove(request))
+            request.result.completeExceptionally(new IllegalStateException("pipeline is closed"));
+        return request.result;
+    }
+
+    private void processBatches() {
+        List<Request<?>> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        Exception failure = null;
+        try {
+            while (running || !queue.isEmpty()) {
+                Request<?> first = queue.take();
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                for (Request<?> request : batch)
+                    request.apply(accounts, journal);
+                journal.commit(); // one write and fsync for the whole batch
+                for (Request<?> request : batch)
+                    request.complete();
+                batch.clear();
+            }
+        } catch (InterruptedException | IOException | RuntimeException e) {
+            failure = e;
+        } finally {
+            // however the writer stops, no further requests are accepted (after a failure, the
+            // in-memory state is ahead of the journal) and no request is left without a result
+            running = false;
+            Exception cause = failure != null ? failure : new IllegalStateException("journal-writer stopped");
+            for (Request<?> request : batch)
+                request.result.completeExceptionally(cause);
+            failPending(cause);
+        }
+    }
+
+    /* completes the requests still in the queue exceptionally */
+    private void failPending(Exception cause) {
+        List<Request<?>> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        for (Request<?> request : pending)
+            request.result.completeExceptionally(cause);
+    }
+
+    /**
+     * Stops accepting requests, processes the queued ones and closes the journal.
+     */
+    public void close() throws IOException {
+        running = false;
+        // wake up the writer, in case it waits for a request
+        queue.offer(new TotalRequest());
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            // stop the writer, but wait until it has left the journal before closing it
+            writer.interrupt();
+            joinUninterruptibly(writer);
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+        // requests submitted concurrently with close() are not processed anymore
+        failPending(new IllegalStateException("pipeline is closed"));
+    }
+
+    /* waits until the thread has terminated, even if the current thread is interrupted */
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private abstract static class Request<T> {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        private T value;
+        private RuntimeException failure;
+
+        /* applies the request on the writer thread and records its changes in the journal */
+        void apply(Map<Integer, Account> accounts, TransferJournal journal) {
+            try {
+                value = execute(accounts, journal);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        abstract T execute(Map<Integer, Account> accounts, TransferJournal journal);
+
+        /* completes the result, after the batch was committed */
+        void complete() {
+            if (failure != null)
+                result.completeExceptionally(failure);
+            else
+                result.complete(value);
+        }
+
+        static Account lookup(Map<Integer, Account> accounts, int id) {
+            Account account = accounts.get(id);
+            if (account == null)
+                throw new IllegalArgumentException("unknown account " + id);
+            return account;
+        }
+    }
+
+    private static class OpenRequest extends Request<Void> {
+        private final int id;
+        private final int initialAmount;
+
+        OpenRequest(int id, int initialAmount) {
+            this.id = id;
+            this.initialAmount = initialAmount;
+        }
+
+        Void execute(Map<Integer, Account> accounts, TransferJournal journal) {
+            if (accounts.containsKey(id))
+                throw new IllegalArgumentException("account " + id + " already exists");
+            accounts.put(id, new Account(id, initialAmount));
+            journal.writeOpen(id, initialAmount);
+            return null;
+        }
+    }
+
+    private static class TransferRequest extends Request<Boolean> {
+        private final int fromId;
+        private final int toId;
+        private final int amount;
+
+        TransferRequest(int fromId, int toId, int amount) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.amount = amount;
+        }
+
+        Boolean execute(Map<Integer, Account> accounts, TransferJournal journal) {
+            Account fromAccount = lookup(accounts, fromId);
+            Account toAccount = lookup(accounts, toId);
+            // Account must not be overdrawn, rejected transfers are not journaled
+            if (fromAccount.getSaldo() < amount)
+                return false;
+            fromAccount.changeSaldo(-amount);
+            toAccount.changeSaldo(amount);
+            journal.writeTransfer(fromId, toId, amount);
+            return true;
+        }
+    }
+
+    private static class SaldoRequest extends Request<Integer> {
+        private final int id;
+
+        SaldoRequest(int id) {
+            this.id = id;
+        }
+
+        Integer execute(Map<Integer, Account> accounts, TransferJournal journal) {
+            return lookup(accounts, id).getSaldo();
+        }
+    }
+
+    private static class TotalRequest extends Request<Long> {
+        Long execute(Map<Integer, Account> accounts, TransferJournal journal) {
+            long total = 0;
+            for (Account account : accounts.values())
+                total += account.getSaldo();
+            return total;
+        }
+    }
+}
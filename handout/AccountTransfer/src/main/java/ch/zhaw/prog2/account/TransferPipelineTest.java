@@ -0,0 +1,63 @@
+package ch.zhaw.prog2.account;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs the transfers of AccountTransferTest through the TransferPipeline
+ * and rebuilds the balances from the journal afterwards.
+ * Usage: TransferPipelineTest [journal file]
+ */
+public class TransferPipelineTest {
+    public static void main(String[] args) throws Exception {
+        Path journalFile = Paths.get(args.length > 0 ? args[0] : "transfers.journal");
+        Files.deleteIfExists(journalFile);
+
+        long startTime = System.currentTimeMillis();
+        try (TransferPipeline pipeline = new TransferPipeline(journalFile)) {
+            pipeline.openAccount(1, 10);
+            pipeline.openAccount(2, 10);
+            pipeline.openAccount(3, 999999);
+            System.out.println("Total at start: " + pipeline.totalSaldo().get());
+
+            List<Thread> workers = List.of(
+                transferWorker("Worker 1", pipeline, 3, 1, 1),
+                transferWorker("Worker 2", pipeline, 3, 2, 2),
+                transferWorker("Worker 3", pipeline, 2, 1, 1));
+            for (Thread worker : workers)
+                worker.start();
+            for (Thread worker : workers)
+                worker.join();
+
+            for (int id = 1; id <= 3; id++)
+                System.out.println("Saldo account" + id + ": " + pipeline.getSaldo(id).get());
+            System.out.println("Total at end: " + pipeline.totalSaldo().get());
+        }
+        System.out.println("Finished after " + (System.currentTimeMillis() - startTime) + "ms");
+
+        // a restart rebuilds the balances from the journal
+        try (TransferPipeline pipeline = new TransferPipeline(journalFile)) {
+            for (int id = 1; id <= 3; id++)
+                System.out.println("Replayed saldo account" + id + ": " + pipeline.getSaldo(id).get());
+            System.out.println("Replayed total: " + pipeline.totalSaldo().get());
+        }
+    }
+
+    private static Thread transferWorker(String name, TransferPipeline pipeline, int fromId, int toId, int amount) {
+        return new Thread(() -> {
+            try {
+                List<CompletableFuture<Boolean>> results = new ArrayList<>();
+                for (int i = 0; i < 10000; i++)
+                    results.add(pipeline.transfer(fromId, toId, amount));
+                long rejected = results.stream().filter(result -> !result.join()).count();
+                System.out.println("DONE! " + name + ", rejected transfers: " + rejected);
+            } catch (InterruptedException e) {
+                System.out.println(e.getMessage());
+            }
+        }, name);
+    }
+}
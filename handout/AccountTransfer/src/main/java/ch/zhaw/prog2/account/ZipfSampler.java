@@ -0,0 +1,48 @@
+package ch.zhaw.prog2.account;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Draws account indexes 0..n-1 following a Zipf distribution:
+ * index k is drawn with a probability proportional to 1 / (k+1)^exponent.
+ * With exponent 0 all accounts are equally likely, the higher the exponent,
+ * the more the transfers concentrate on a few hot accounts.
+ * The sampler is immutable and can be shared by all threads.
+ */
+public class ZipfSampler {
+    private final double[] cumulative;
+
+    public ZipfSampler(int n, double exponent) {
+        if (n <= 0)
+            throw new IllegalArgumentException("n must be positive");
+        if (exponent < 0)
+            throw new IllegalArgumentException("exponent must not be negative");
+        cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++)
+            cumulative[k] /= sum;
+    }
+
+    public int size() {
+        return cumulative.length;
+    }
+
+    public int next() {
+        double u = ThreadLocalRandom.current().nextDouble();
+        // binary search for the first index with cumulative probability > u
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] > u)
+                high = middle;
+            else
+                low = middle + 1;
+        }
+        return low;
+    }
+}
@@ -0,0 +1,80 @@
+package ch.zhaw.prog2.circularbuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution (p50, p90, p99, ...) of a single put resp. get call,
+ * sampled while producers and consumers run concurrently.
+ * With a batch size above 1 the latency of the whole batch operation is measured.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Group)
+public class BufferLatencyBenchmark {
+
+    @Param({"CircularBuffer", "MpmcRingBuffer", "ArrayBlockingQueue", "LinkedTransferQueue"})
+    public String implementation;
+
+    @Param({"1024"})
+    public int capacity;
+
+    @Param({"1", "64"})
+    public int batchSize;
+
+    private QueueAdapter queue;
+
+    @Setup(Level.Iteration)
+    public void createQueue() {
+        queue = QueueAdapter.create(implementation, capacity);
+    }
+
+    @State(Scope.Thread)
+    public static class Batch {
+        Integer[] items;
+
+        @Setup
+        public void fill(BufferLatencyBenchmark benchmark) {
+            items = BufferThroughputBenchmark.createBatch(benchmark.batchSize);
+        }
+    }
+
+    @Benchmark
+    @Group("p1c1")
+    @GroupThreads(1)
+    public int p1c1Put(Batch batch) {
+        return queue.putBatch(batch.items);
+    }
+
+    @Benchmark
+    @Group("p1c1")
+    @GroupThreads(1)
+    public int p1c1Get() {
+        return queue.takeBatch(batchSize);
+    }
+
+    @Benchmark
+    @Group("pNcN")
+    @GroupThreads(3)
+    public int pNcNPut(Batch batch) {
+        return queue.putBatch(batch.items);
+    }
+
+    @Benchmark
+    @Group("pNcN")
+    @GroupThreads(3)
+    public int pNcNGet() {
+        return queue.takeBatch(batchSize);
+    }
+}
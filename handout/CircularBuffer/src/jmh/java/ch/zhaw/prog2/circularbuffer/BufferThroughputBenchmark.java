@@ -0,0 +1,138 @@
+package ch.zhaw.prog2.circularbuffer;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the producer/consumer paths for one producer and one consumer (1P1C),
+ * several producers and one consumer (NP1C) and several producers and consumers (NPNC).
+ * The auxiliary counters report the successfully transferred elements per second
+ * and the failed attempts on a full resp. empty buffer.
+ * The SpscRingBuffer only supports the 1P1C configuration, see {@link SpscThroughputBenchmark}.
+ * Latency percentiles are measured by {@link BufferLatencyBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Group)
+public class BufferThroughputBenchmark {
+    private static final int PRODUCERS = 3;
+    private static final int CONSUMERS = 3;
+
+    @Param({"CircularBuffer", "MpmcRingBuffer", "ArrayBlockingQueue", "LinkedTransferQueue"})
+    public String implementation;
+
+    @Param({"1024", "65536"})
+    public int capacity;
+
+    @Param({"1", "64", "256"})
+    public int batchSize;
+
+    private QueueAdapter queue;
+
+    @Setup(Level.Iteration)
+    public void createQueue() {
+        // a new queue per iteration, so the unbounded queue does not grow forever
+        queue = QueueAdapter.create(implementation, capacity);
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class PutCounters {
+        public long puts;
+        public long fullFails;
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class GetCounters {
+        public long gets;
+        public long emptyFails;
+    }
+
+    @State(Scope.Thread)
+    public static class Batch {
+        Integer[] items;
+
+        @Setup
+        public void fill(BufferThroughputBenchmark benchmark) {
+            items = createBatch(benchmark.batchSize);
+        }
+    }
+
+    static Integer[] createBatch(int batchSize) {
+        Integer[] items = new Integer[batchSize];
+        for (int i = 0; i < items.length; i++)
+            items[i] = i;
+        return items;
+    }
+
+    int produce(Batch batch, PutCounters counters) {
+        int done = queue.putBatch(batch.items);
+        if (done == 0)
+            counters.fullFails++;
+        counters.puts += done;
+        return done;
+    }
+
+    int consume(GetCounters counters) {
+        int done = queue.takeBatch(batchSize);
+        if (done == 0)
+            counters.emptyFails++;
+        counters.gets += done;
+        return done;
+    }
+
+    @Benchmark
+    @Group("p1c1")
+    @GroupThreads(1)
+    public int p1c1Put(Batch batch, PutCounters counters) {
+        return produce(batch, counters);
+    }
+
+    @Benchmark
+    @Group("p1c1")
+    @GroupThreads(1)
+    public int p1c1Get(GetCounters counters) {
+        return consume(counters);
+    }
+
+    @Benchmark
+    @Group("pNc1")
+    @GroupThreads(PRODUCERS)
+    public int pNc1Put(Batch batch, PutCounters counters) {
+        return produce(batch, counters);
+    }
+
+    @Benchmark
+    @Group("pNc1")
+    @GroupThreads(1)
+    public int pNc1Get(GetCounters counters) {
+        return consume(counters);
+    }
+
+    @Benchmark
+    @Group("pNcN")
+    @GroupThreads(PRODUCERS)
+    public int pNcNPut(Batch batch, PutCounters counters) {
+        return produce(batch, counters);
+    }
+
+    @Benchmark
+    @Group("pNcN")
+    @GroupThreads(CONSUMERS)
+    public int pNcNGet(GetCounters counters) {
+        return consume(counters);
+    }
+}
@@ -0,0 +1,150 @@
+package ch.zhaw.prog2.circularbuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Common non-blocking view on the buffers and the JDK queues used as baseline.
+ * Non-blocking operations are used, so no benchmark thread hangs at the end of an iteration.
+ */
+interface QueueAdapter {
+    boolean offer(Integer item);
+    Integer poll();
+    int offerBatch(Integer[] items);
+    int drainBatch(int maxElements);
+
+    /* puts a batch, single elements are put with offer */
+    default int putBatch(Integer[] items) {
+        return items.length == 1 ? (offer(items[0]) ? 1 : 0) : offerBatch(items);
+    }
+
+    /* takes a batch, single elements are taken with poll */
+    default int takeBatch(int batchSize) {
+        return batchSize == 1 ? (poll() != null ? 1 : 0) : drainBatch(batchSize);
+    }
+
+    static QueueAdapter create(String implementation, int capacity) {
+        switch (implementation) {
+            case "CircularBuffer":
+                return new BufferAdapter(new CircularBuffer<>(Integer.class, capacity));
+            case "SpscRingBuffer":
+                return new BufferAdapter(new SpscRingBuffer<>(Integer.class, capacity));
+            case "MpmcRingBuffer":
+                return new BufferAdapter(new MpmcRingBuffer<>(Integer.class, capacity));
+            case "ArrayBlockingQueue":
+                return new BlockingQueueAdapter(new ArrayBlockingQueue<>(capacity));
+            case "LinkedTransferQueue":
+                // unbounded, an extra counter keeps it from growing while consumers are slower
+                return new BoundedAdapter(new BlockingQueueAdapter(new LinkedTransferQueue<>()), capacity);
+            default:
+                throw new IllegalArgumentException("unknown implementation: " + implementation);
+        }
+    }
+
+    class BufferAdapter implements QueueAdapter {
+        private final Buffer<Integer> buffer;
+
+        BufferAdapter(Buffer<Integer> buffer) {
+            this.buffer = buffer;
+        }
+
+        public boolean offer(Integer item) {
+            return buffer.offer(item);
+        }
+
+        public Integer poll() {
+            return buffer.poll();
+        }
+
+        public int offerBatch(Integer[] items) {
+            return buffer.putAll(items, 0, items.length);
+        }
+
+        public int drainBatch(int maxElements) {
+            return buffer.drain(item -> { }, maxElements);
+        }
+    }
+
+    class BlockingQueueAdapter implements QueueAdapter {
+        private final BlockingQueue<Integer> queue;
+        // drainTo needs a target, each consumer thread uses its own list
+        private final ThreadLocal<List<Integer>> sink = ThreadLocal.withInitial(ArrayList::new);
+
+        BlockingQueueAdapter(BlockingQueue<Integer> queue) {
+            this.queue = queue;
+        }
+
+        public boolean offer(Integer item) {
+            return queue.offer(item);
+        }
+
+        public Integer poll() {
+            return queue.poll();
+        }
+
+        public int offerBatch(Integer[] items) {
+            int done = 0;
+            while (done < items.length && queue.offer(items[done]))
+                done++;
+            return done;
+        }
+
+        public int drainBatch(int maxElements) {
+            List<Integer> target = sink.get();
+            int done = queue.drainTo(target, maxElements);
+            target.clear();
+            return done;
+        }
+    }
+
+    class BoundedAdapter implements QueueAdapter {
+        private final QueueAdapter queue;
+        private final int capacity;
+        private final AtomicInteger count = new AtomicInteger();
+
+        BoundedAdapter(QueueAdapter queue, int capacity) {
+            this.queue = queue;
+            this.capacity = capacity;
+        }
+
+        private int reserve(int wanted) {
+            while (true) {
+                int current = count.get();
+                int granted = Math.min(wanted, capacity - current);
+                if (granted <= 0 || count.compareAndSet(current, current + granted))
+                    return Math.max(granted, 0);
+            }
+        }
+
+        public boolean offer(Integer item) {
+            if (reserve(1) == 0)
+                return false;
+            queue.offer(item);
+            return true;
+        }
+
+        public Integer poll() {
+            Integer item = queue.poll();
+            if (item != null)
+                count.decrementAndGet();
+            return item;
+        }
+
+        public int offerBatch(Integer[] items) {
+            int granted = reserve(items.length);
+            for (int i = 0; i < granted; i++)
+                queue.offer(items[i]);
+            return granted;
+        }
+
+        public int drainBatch(int maxElements) {
+            int done = queue.drainBatch(maxElements);
+            count.addAndGet(-done);
+            return done;
+        }
+    }
+}
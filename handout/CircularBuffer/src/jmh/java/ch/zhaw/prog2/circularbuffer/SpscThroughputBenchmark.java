@@ -0,0 +1,66 @@
+package ch.zhaw.prog2.circularbuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of one producer and one consumer (1P1C),
+ * comparing the SpscRingBuffer with the general purpose implementations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Group)
+public class SpscThroughputBenchmark {
+
+    @Param({"SpscRingBuffer", "MpmcRingBuffer", "ArrayBlockingQueue"})
+    public String implementation;
+
+    @Param({"1024", "65536"})
+    public int capacity;
+
+    @Param({"1", "64", "256"})
+    public int batchSize;
+
+    private QueueAdapter queue;
+    private Integer[] batch;
+
+    @Setup(Level.Iteration)
+    public void createQueue() {
+        queue = QueueAdapter.create(implementation, capacity);
+        // only used by the single producer thread
+        batch = BufferThroughputBenchmark.createBatch(batchSize);
+    }
+
+    @Benchmark
+    @Group("p1c1")
+    @GroupThreads(1)
+    public int put(BufferThroughputBenchmark.PutCounters counters) {
+        int done = queue.putBatch(batch);
+        if (done == 0)
+            counters.fullFails++;
+        counters.puts += done;
+        return done;
+    }
+
+    @Benchmark
+    @Group("p1c1")
+    @GroupThreads(1)
+    public int get(BufferThroughputBenchmark.GetCounters counters) {
+        int done = queue.takeBatch(batchSize);
+        if (done == 0)
+            counters.emptyFails++;
+        counters.gets += done;
+        return done;
+    }
+}
@@ -0,0 +1,83 @@
+package ch.zhaw.prog2.circularbuffer;
+
+import java.lang.reflect.Array;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+/**
+ * Common part of the ring buffers storing primitive values in an array of type A (e.g. int[]),
+ * for exactly one producer and one consumer thread.
+ * This class does the bookkeeping of the positions and copies whole batches,
+ * the subclasses only read and write single slots of the array.
+ */
+abstract class AbstractPrimitiveRingBuffer<A> extends AbstractSpscRingBuffer {
+    protected final A items;
+
+    protected AbstractPrimitiveRingBuffer(int bufferSize, WaitStrategy waitStrategy, IntFunction<A> arrayFactory) {
+        super(bufferSize, waitStrategy);
+        this.items = arrayFactory.apply(capacity);
+    }
+
+    /* producer side: position of the slot to write next, or -1 if the buffer is full */
+    protected final long nextWritable() {
+        long currentTail = tail.getPlain();
+        return writable(currentTail, 1) == 0 ? -1 : currentTail;
+    }
+
+    /* producer side: makes the value written to the slot of the position visible to the consumer */
+    protected final void publish(long position) {
+        tail.setRelease(position + 1);
+        published(1, position + 1);
+    }
+
+    /* consumer side: position of the oldest value, or -1 if the buffer is empty */
+    protected final long nextReadable() {
+        long currentHead = head.getPlain();
+        return readable(currentHead, 1) == 0 ? -1 : currentHead;
+    }
+
+    /* consumer side: frees the slot of the position, after its value was read */
+    protected final void release(long position) {
+        head.setRelease(position + 1);
+        consumed(1);
+    }
+
+    /**
+     * Copies up to len values from src, starting at index off, as far as there is space.
+     *
+     * @return number of values put into the buffer
+     */
+    public int putAll(A src, int off, int len) {
+        Objects.checkFromIndexSize(off, len, Array.getLength(src));
+        long currentTail = tail.getPlain();
+        int batchSize = writable(currentTail, len);
+        int start = index(currentTail);
+        int firstChunk = Math.min(batchSize, capacity - start);
+        System.arraycopy(src, off, items, start, firstChunk);
+        System.arraycopy(src, off + firstChunk, items, 0, batchSize - firstChunk);
+        tail.setRelease(currentTail + batchSize);
+        if (batchSize > 0)
+            published(batchSize, currentTail + batchSize);
+        return batchSize;
+    }
+
+    /*
+     * Consumer side: passes the slots of up to limit values to the action and removes them.
+     * If the action fails, only the values already passed on are removed.
+     */
+    protected final int drainSlots(IntConsumer slotAction, int limit) {
+        long currentHead = head.getPlain();
+        int batchSize = readable(currentHead, limit);
+        int done = 0;
+        try {
+            for (; done < batchSize; done++)
+                slotAction.accept(index(currentHead + done));
+        } finally {
+            head.setRelease(currentHead + done);
+            if (done > 0)
+                consumed(done);
+        }
+        return done;
+    }
+}
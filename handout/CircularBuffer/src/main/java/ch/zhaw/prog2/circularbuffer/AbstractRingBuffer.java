@@ -0,0 +1,105 @@
+package ch.zhaw.prog2.circularbuffer;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Common index bookkeeping of the lock-free ring buffers.
+ * The capacity is always a power of two, so a position is mapped to its slot
+ * by masking instead of the expensive modulo operation.
+ * Head and tail are never wrapped, they are ever increasing sequences.
+ * Threads waiting for a full resp. empty buffer use the configured wait strategy.
+ */
+abstract class AbstractRingBuffer {
+    private static final int MAX_CAPACITY = 1 << 30;
+    // the count for the high water mark is only sampled every 64 puts, as it reads the head of the consumers
+    private static final int COUNT_SAMPLE_SHIFT = 6;
+
+    protected final int capacity;
+    protected final int mask;
+    protected final Sequence head = new Sequence(0); // next position to read
+    protected final Sequence tail = new Sequence(0); // next position to write
+    protected final WaitStrategy waitStrategy;
+    protected final BufferMetrics metrics;
+    private final BooleanSupplier notFull = () -> !full();
+    private final BooleanSupplier notEmpty = () -> !empty();
+
+    protected AbstractRingBuffer(int bufferSize, WaitStrategy waitStrategy) {
+        this.capacity = ceilingPowerOfTwo(bufferSize);
+        this.mask = capacity - 1;
+        this.waitStrategy = waitStrategy;
+        this.metrics = new BufferMetrics(capacity);
+    }
+
+    static int ceilingPowerOfTwo(int bufferSize) {
+        if (bufferSize <= 1)
+            return 1;
+        if (bufferSize > MAX_CAPACITY)
+            throw new IllegalArgumentException("buffer size must not exceed " + MAX_CAPACITY);
+        return Integer.highestOneBit(bufferSize - 1) << 1;
+    }
+
+    protected final int index(long position) {
+        return (int) (position & mask);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public WaitStrategy waitStrategy() {
+        return waitStrategy;
+    }
+
+    public BufferMetrics metrics() {
+        return metrics;
+    }
+
+    public final boolean awaitNotFull(long timeoutNanos) throws InterruptedException {
+        return await(notFull, timeoutNanos);
+    }
+
+    public final boolean awaitNotEmpty(long timeoutNanos) throws InterruptedException {
+        return await(notEmpty, timeoutNanos);
+    }
+
+    private boolean await(BooleanSupplier condition, long timeoutNanos) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            return waitStrategy.await(condition, timeoutNanos);
+        } finally {
+            metrics.recordWait(System.nanoTime() - start);
+        }
+    }
+
+    /*
+     * To be called after elements were put up to the position newTail, counts them and wakes up waiting consumers.
+     * The high water mark is only sampled whenever the tail passes a multiple of 64.
+     */
+    protected final void published(int elements, long newTail) {
+        metrics.recordPut(elements);
+        if ((newTail - elements) >> COUNT_SAMPLE_SHIFT != newTail >> COUNT_SAMPLE_SHIFT)
+            metrics.recordCount(count());
+        waitStrategy.signalAll();
+    }
+
+    /* to be called after elements were removed, counts them and wakes up waiting producers */
+    protected final void consumed(int elements) {
+        metrics.recordGet(elements);
+        waitStrategy.signalAll();
+    }
+
+    public boolean empty() {
+        return count() == 0;
+    }
+
+    public boolean full() {
+        return count() >= capacity;
+    }
+
+    public int count() {
+        // head and tail may move while reading them, so the result is only an estimate
+        long currentHead = head.get();
+        long currentTail = tail.get();
+        return (int) Math.max(0, Math.min(capacity, currentTail - currentHead));
+    }
+}
@@ -0,0 +1,56 @@
+package ch.zhaw.prog2.circularbuffer;
+
+/**
+ * Index bookkeeping of the ring buffers for exactly one producer and one consumer thread.
+ * Each side only writes its own sequence and publishes it with release semantics.
+ * The last seen position of the other side is cached, so the shared sequence
+ * is only read when the buffer seems to be full resp. empty.
+ */
+abstract class AbstractSpscRingBuffer extends AbstractRingBuffer {
+    private long cachedHead = 0; // only accessed by the producer
+    private long cachedTail = 0; // only accessed by the consumer
+
+    protected AbstractSpscRingBuffer(int bufferSize, WaitStrategy waitStrategy) {
+        super(bufferSize, waitStrategy);
+    }
+
+    /* producer side: number of free slots starting at currentTail, at most wanted */
+    protected final int writable(long currentTail, int wanted) {
+        if (capacity - (currentTail - cachedHead) < wanted)
+            cachedHead = head.getAcquire();
+        return (int) Math.min(wanted, capacity - (currentTail - cachedHead));
+    }
+
+    /* consumer side: number of filled slots starting at currentHead, at most wanted */
+    protected final int readable(long currentHead, int wanted) {
+        if (cachedTail - currentHead < wanted)
+            cachedTail = tail.getAcquire();
+        return (int) Math.min(wanted, cachedTail - currentHead);
+    }
+
+    /*
+     * Producer side: waits until the buffer is not full or the deadline (System.nanoTime()) has passed.
+     * A timeout is counted as rejected put.
+     */
+    protected final boolean awaitNotFullUntil(long deadline) throws InterruptedException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0 || !awaitNotFull(remaining)) {
+            metrics.recordRejectedPut();
+            return false;
+        }
+        return true;
+    }
+
+    /*
+     * Consumer side: waits until the buffer is not empty or the deadline (System.nanoTime()) has passed.
+     * A timeout is counted as empty poll.
+     */
+    protected final boolean awaitNotEmptyUntil(long deadline) throws InterruptedException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0 || !awaitNotEmpty(remaining)) {
+            metrics.recordEmptyPoll();
+            return false;
+        }
+        return true;
+    }
+}
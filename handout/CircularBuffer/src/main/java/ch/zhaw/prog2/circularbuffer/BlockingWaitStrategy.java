@@ -0,0 +1,53 @@
+package ch.zhaw.prog2.circularbuffer;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Blocks the waiting threads on a condition variable until they are signalled.
+ * Uses no CPU while waiting, but waking up a thread costs a context switch.
+ * The lock is only taken for signalling if there are waiting threads.
+ */
+public class BlockingWaitStrategy implements WaitStrategy {
+    private final Lock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public boolean await(BooleanSupplier condition, long timeoutNanos) throws InterruptedException {
+        if (condition.getAsBoolean())
+            return true;
+        long remaining = timeoutNanos;
+        // register first, so a signalling thread either sees us waiting or we see its change
+        waiting.incrementAndGet();
+        lock.lock();
+        try {
+            while (!condition.getAsBoolean()) {
+                if (remaining <= 0)
+                    return false;
+                remaining = changed.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+            waiting.decrementAndGet();
+        }
+    }
+
+    public void signalAll() {
+        // the buffers publish their changes with release stores only, the fence
+        // makes sure the change is visible before checking for waiting threads
+        VarHandle.fullFence();
+        if (waiting.get() > 0) {
+            lock.lock();
+            try {
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -1,11 +1,148 @@
 package ch.zhaw.prog2.circularbuffer;
 
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Bounded FIFO buffer.
+ * The blocking operations wait according to the {@link WaitStrategy} of the buffer.
+ * As null signals an empty buffer, null elements are not allowed.
+ * The operations are counted in the {@link BufferMetrics} of the buffer.
+ */
 public interface Buffer<T> {
-    boolean put(T element) throws InterruptedException;
-    T get() throws InterruptedException;
+    /**
+     * Puts the element into the buffer, waiting while the buffer is full.
+     *
+     * @return always true
+     */
+    default boolean put(T element) throws InterruptedException {
+        while (!tryOffer(element))
+            awaitNotFull(Long.MAX_VALUE);
+        return true;
+    }
+
+    /**
+     * Removes the oldest element, waiting while the buffer is empty.
+     */
+    default T get() throws InterruptedException {
+        T element;
+        while ((element = poll()) == null)
+            awaitNotEmpty(Long.MAX_VALUE);
+        return element;
+    }
+
+    /**
+     * Puts the element into the buffer if it is not full.
+     *
+     * @return false if the buffer is full
+     */
+    boolean offer(T element);
+
+    /**
+     * Like {@link #offer(Object)}, but a full buffer is not counted as rejected put.
+     * The blocking operations use it for their attempts, as they wait and try again.
+     *
+     * @return false if the buffer is full
+     */
+    boolean tryOffer(T element);
+
+    /**
+     * Removes the oldest element if there is one.
+     *
+     * @return the element or null if the buffer is empty
+     */
+    T poll();
+
+    /**
+     * Puts the element into the buffer, waiting at most the given time while the buffer is full.
+     *
+     * @return false if the timeout elapsed
+     */
+    default boolean offer(T element, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!tryOffer(element)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !awaitNotFull(remaining)) {
+                metrics().recordRejectedPut();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the oldest element, waiting at most the given time while the buffer is empty.
+     *
+     * @return the element or null if the timeout elapsed
+     */
+    default T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        T element;
+        while ((element = poll()) == null) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !awaitNotEmpty(remaining))
+                return null;
+        }
+        return element;
+    }
+
+    /**
+     * Waits at most the given time until the buffer is not full, using the wait strategy.
+     * The time is counted in the metrics.
+     *
+     * @return false if the timeout elapsed
+     */
+    boolean awaitNotFull(long timeoutNanos) throws InterruptedException;
+
+    /**
+     * Waits at most the given time until the buffer is not empty, using the wait strategy.
+     * The time is counted in the metrics.
+     *
+     * @return false if the timeout elapsed
+     */
+    boolean awaitNotEmpty(long timeoutNanos) throws InterruptedException;
+
+    WaitStrategy waitStrategy();
+    BufferMetrics metrics();
     boolean empty();
     boolean full();
     int count();
-    void printBufferSlots();
-    void printBufferContent();
+
+    /**
+     * Puts up to len elements of src, starting at index off, into the buffer without waiting.
+     * Implementations publish the whole batch at once where possible.
+     *
+     * @return number of elements put, which is less than len if the buffer got full
+     */
+    default int putAll(T[] src, int off, int len) {
+        int done = 0;
+        while (done < len && offer(src[off + done]))
+            done++;
+        return done;
+    }
+
+    /**
+     * Removes up to maxElements elements without waiting and adds them to the target collection.
+     *
+     * @return number of elements transferred
+     */
+    default int drainTo(Collection<? super T> target, int maxElements) {
+        return drain(target::add, maxElements);
+    }
+
+    /**
+     * Removes up to limit elements without waiting and passes them to the action in FIFO order.
+     *
+     * @return number of elements consumed
+     */
+    default int drain(Consumer<? super T> action, int limit) {
+        int done = 0;
+        T item;
+        while (done < limit && (item = poll()) != null) {
+            action.accept(item);
+            done++;
+        }
+        return done;
+    }
 }
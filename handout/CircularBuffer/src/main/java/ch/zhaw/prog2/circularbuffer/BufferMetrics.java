@@ -0,0 +1,66 @@
+package ch.zhaw.prog2.circularbuffer;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a buffer, updated by the producer and consumer threads.
+ * The counters are striped (LongAdder), so concurrent updates do not contend on
+ * a single memory location. Reading them is more expensive, use {@link #snapshot()}.
+ */
+public class BufferMetrics {
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder gets = new LongAdder();
+    private final LongAdder rejectedPuts = new LongAdder();
+    private final LongAdder emptyPolls = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAccumulator highWaterMark = new LongAccumulator(Long::max, 0);
+    private final int capacity;
+
+    public BufferMetrics(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /* elements were put, count is the number of elements in the buffer afterwards */
+    void recordPut(int elements, int count) {
+        puts.add(elements);
+        highWaterMark.accumulate(count);
+    }
+
+    /* elements were put, without the number of elements in the buffer */
+    void recordPut(int elements) {
+        puts.add(elements);
+    }
+
+    /* number of elements in the buffer, sampled by the buffers which can not count cheaply */
+    void recordCount(long count) {
+        highWaterMark.accumulate(count);
+    }
+
+    void recordGet(int elements) {
+        gets.add(elements);
+    }
+
+    /* a non-blocking put failed because the buffer was full (not counted for the retries of a blocking put) */
+    void recordRejectedPut() {
+        rejectedPuts.increment();
+    }
+
+    /* a non-blocking get failed because the buffer was empty */
+    void recordEmptyPoll() {
+        emptyPolls.increment();
+    }
+
+    void recordWait(long nanos) {
+        waitNanos.add(nanos);
+    }
+
+    /**
+     * Sums up the counters. The counters are read one after the other,
+     * so they are not consistent with each other if the buffer is in use.
+     */
+    public BufferStats snapshot() {
+        return new BufferStats(System.nanoTime(), capacity, puts.sum(), gets.sum(),
+            rejectedPuts.sum(), emptyPolls.sum(), highWaterMark.get(), waitNanos.sum());
+    }
+}
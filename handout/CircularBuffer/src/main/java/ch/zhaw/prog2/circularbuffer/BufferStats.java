@@ -0,0 +1,53 @@
+package ch.zhaw.prog2.circularbuffer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable snapshot of the {@link BufferMetrics} of a buffer.
+ * No getters. Just use direct access to the fields.
+ */
+public class BufferStats {
+    public final long timestampNanos;
+    public final int capacity;
+    public final long puts;
+    public final long gets;
+    public final long rejectedPuts;
+    public final long emptyPolls;
+    public final long highWaterMark;
+    public final long waitNanos;
+
+    BufferStats(long timestampNanos, int capacity, long puts, long gets,
+                long rejectedPuts, long emptyPolls, long highWaterMark, long waitNanos) {
+        this.timestampNanos = timestampNanos;
+        this.capacity = capacity;
+        this.puts = puts;
+        this.gets = gets;
+        this.rejectedPuts = rejectedPuts;
+        this.emptyPolls = emptyPolls;
+        this.highWaterMark = highWaterMark;
+        this.waitNanos = waitNanos;
+    }
+
+    /* approximate number of elements in the buffer */
+    public long count() {
+        return Math.max(0, puts - gets);
+    }
+
+    /**
+     * Formats the changes since the previous snapshot as rates per second.
+     */
+    public String formatRates(BufferStats previous) {
+        double seconds = Math.max(1, timestampNanos - previous.timestampNanos) / 1e9;
+        return String.format("puts/s: %.0f gets/s: %.0f rejected/s: %.0f empty/s: %.0f wait: %d ms",
+            (puts - previous.puts) / seconds, (gets - previous.gets) / seconds,
+            (rejectedPuts - previous.rejectedPuts) / seconds, (emptyPolls - previous.emptyPolls) / seconds,
+            TimeUnit.NANOSECONDS.toMillis(waitNanos - previous.waitNanos));
+    }
+
+    @Override
+    public String toString() {
+        return "count: " + count() + "/" + capacity + " high water: " + highWaterMark
+            + " puts: " + puts + " gets: " + gets + " rejected puts: " + rejectedPuts
+            + " empty polls: " + emptyPolls + " wait: " + TimeUnit.NANOSECONDS.toMillis(waitNanos) + " ms";
+    }
+}
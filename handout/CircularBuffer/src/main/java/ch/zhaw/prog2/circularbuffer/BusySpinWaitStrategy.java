@@ -0,0 +1,27 @@
+package ch.zhaw.prog2.circularbuffer;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Spins on the condition without ever giving up the CPU.
+ * Gives the lowest latency, but burns one core per waiting thread.
+ * Only use it if there are more cores than busy threads.
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+
+    public boolean await(BooleanSupplier condition, long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (!condition.getAsBoolean()) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if (deadline - System.nanoTime() <= 0)
+                return false;
+            Thread.onSpinWait();
+        }
+        return true;
+    }
+
+    public void signalAll() {
+        // nothing to do, the waiting threads are spinning
+    }
+}
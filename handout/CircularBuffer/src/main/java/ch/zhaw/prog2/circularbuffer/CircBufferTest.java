@@ -3,14 +3,16 @@ package ch.zhaw.prog2.circularbuffer;
 public class CircBufferTest {
     public static void main(String[] args) {
         final int capacity = 15; // Number of buffer items
-        final int prodCount = 1; // Number of producer threads
-        final int consCount = 1; // Number of consumer threads
+        final int prodCount = 2; // Number of producer threads
+        final int consCount = 2; // Number of consumer threads
         final int maxProdTime = 500; // max. production time for one item
         final int maxConsTime = 500; // max. consumption time for one item
 
         try {
-            Buffer<String> buffer = new CircularBuffer<>(
-                    String.class, capacity);
+            // multiple producers and consumers require the MPMC variant,
+            // waiting threads are blocked as the production takes long
+            Buffer<String> buffer = new MpmcRingBuffer<>(
+                    String.class, capacity, new BlockingWaitStrategy());
 
             Consumer[] consumers = new Consumer[consCount];
             for (int i = 0; i < consCount; i++) {
@@ -25,10 +27,10 @@ public class CircBufferTest {
                 producers[i].start();
             }
 
-            while (true) {
-                // buffer.printBufferSlots();
-                buffer.printBufferContent();
-                Thread.sleep(1000);
+            MetricsReporter reporter = new MetricsReporter("Reporter", buffer.metrics(), 1000);
+            reporter.start();
+            for (Producer producer : producers) {
+                producer.join();
             }
         } catch (Exception logOrIgnore) {
             System.out.println(logOrIgnore.getMessage());
@@ -36,30 +38,50 @@ public class CircBufferTest {
     }
 
     private static class Producer extends Thread {
-        // ToDo: Add required instance variables
+        private final Buffer<String> buffer;
+        private final int prodTime;
 
         public Producer(String name, Buffer<String> buffer, int prodTime) {
             super(name);
-            // ToDo implement Constructor
+            this.buffer = buffer;
+            this.prodTime = prodTime;
         }
 
         @Override
         public void run() {
-            // ToDo: Continuously produce counting Strings in prodTime intervall
+            int number = 0;
+            try {
+                while (true) {
+                    buffer.put(getName() + ":" + number);
+                    number++;
+                    Thread.sleep((int) (Math.random() * prodTime));
+                }
+            } catch (InterruptedException e) {
+                System.out.println(getName() + " interrupted: " + e.getMessage());
+            }
         }
     }
 
     private static class Consumer extends Thread {
-        // ToDo: Add required instance variables
+        private final Buffer<String> buffer;
+        private final int consTime;
 
         public Consumer(String name, Buffer<String> buffer, int consTime) {
             super(name);
-            // ToDo implement Constructor
+            this.buffer = buffer;
+            this.consTime = consTime;
         }
 
         @Override
         public void run() {
-            // ToDo: Continuously consume Strings in prodTime intervall
+            try {
+                while (true) {
+                    buffer.get();
+                    Thread.sleep((int) (Math.random() * consTime));
+                }
+            } catch (InterruptedException e) {
+                System.out.println(getName() + " interrupted: " + e.getMessage());
+            }
         }
     }
 
@@ -1,102 +1,179 @@
 package ch.zhaw.prog2.circularbuffer;
 
 import java.lang.reflect.Array;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 public class CircularBuffer<T> implements Buffer<T> {
-    private static final char EMPTY = '-';
-    private static final char FILLED = '*';
     private T[] items;
     private int count = 0;
     private int insertPosition = 0;
     private int outputPosition = 0;
-    private StringBuffer printout;
+    private final WaitStrategy waitStrategy;
+    private final BufferMetrics metrics;
+    // created once, as the blocking operations may wait very often
+    private final BooleanSupplier notFull = () -> !full();
+    private final BooleanSupplier notEmpty = () -> !empty();
 
-    @SuppressWarnings("unchecked")
     public CircularBuffer(Class<T> clazz, int bufferSize) {
-        printout = new StringBuffer();
+        this(clazz, bufferSize, new BlockingWaitStrategy());
+    }
+
+    @SuppressWarnings("unchecked")
+    public CircularBuffer(Class<T> clazz, int bufferSize, WaitStrategy waitStrategy) {
         if (bufferSize <= 1)
             bufferSize = 1;
         this.items = (T[]) Array.newInstance(clazz, bufferSize);
+        this.waitStrategy = waitStrategy;
+        this.metrics = new BufferMetrics(bufferSize);
+    }
+
+    public boolean offer(T item) {
+        if (tryOffer(item))
+            return true;
+        metrics.recordRejectedPut();
+        return false;
+    }
+
+    /*
+     * The waiting threads are signalled after leaving the monitor,
+     * as the wait strategy may check the state of the buffer while holding its own lock.
+     */
+    @Override
+    public boolean tryOffer(T item) {
+        Objects.requireNonNull(item);
+        if (!tryPut(item))
+            return false;
+        waitStrategy.signalAll();
+        return true;
     }
 
-    public boolean put(T item) {
+    public T poll() {
+        T item = tryGet();
+        if (item != null)
+            waitStrategy.signalAll();
+        return item;
+    }
+
+    private synchronized boolean tryPut(T item) {
         if (this.full())
             return false;
         items[insertPosition] = item;
         insertPosition = (insertPosition + 1) % items.length;
         count++;
+        metrics.recordPut(1, count);
         return true;
     }
 
-    public T get() {
-        if (empty())
+    private synchronized T tryGet() {
+        if (empty()) {
+            metrics.recordEmptyPoll();
             return null;
+        }
         T item = items[outputPosition];
         outputPosition = (outputPosition + 1) % items.length;
         count--;
+        metrics.recordGet(1);
         return item;
     }
 
-    public boolean empty() {
-        return count == 0;
+    public WaitStrategy waitStrategy() {
+        return waitStrategy;
     }
 
-    public boolean full() {
-        return count >= items.length;
+    public BufferMetrics metrics() {
+        return metrics;
     }
 
-    public int count() {
-        return count;
+    @Override
+    public boolean awaitNotFull(long timeoutNanos) throws InterruptedException {
+        return await(notFull, timeoutNanos);
     }
 
-    public void printBufferSlots() {
-        printout.delete(0, printout.length());
-
-        int i = 0;
-
-        // from where to where is the buffer filled?
-        printout.append("filled where: ||");
-
-        if (full()) {
-            for (i = 0; i < items.length; i++)
-                printout.append(FILLED);
-        } else {
-            char c1;
-            char c2;
-            if (insertPosition < outputPosition) { // if iPos < oPos, the buffer
-                                                   // starts with
-                // filled slots at pos. 0; otherwise it
-                // starts with empty slots
-                c1 = FILLED; // * -> filled slot
-                c2 = EMPTY; // - -> empty slot
-            } else {
-                c1 = EMPTY;
-                c2 = FILLED;
-            }
-            for (i = 0; i < outputPosition && i < insertPosition; i++)
-                printout.append(c1);
-            for (; i < outputPosition || i < insertPosition; i++)
-                printout.append(c2);
-            for (; i < items.length; i++)
-                printout.append(c1);
+    @Override
+    public boolean awaitNotEmpty(long timeoutNanos) throws InterruptedException {
+        return await(notEmpty, timeoutNanos);
+    }
+
+    private boolean await(BooleanSupplier condition, long timeoutNanos) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            return waitStrategy.await(condition, timeoutNanos);
+        } finally {
+            metrics.recordWait(System.nanoTime() - start);
         }
-        printout.append("||  how full: || ");
-
-        // how full is the buffer generally?
-        for (i = 0; i < count; i++)
-            printout.append(FILLED);
-        for (; i < items.length; i++)
-            printout.append(EMPTY);
-        printout.append("||");
-        System.out.println(printout);
-    }
-
-    public void printBufferContent() {
-        System.out.println("Anzahl El im Puffer " + count);
-        for (int i = 0; i < count; i++) {
-            int index = (outputPosition + i) % items.length;
-            System.out.println("index: " + index + " wert: " + items[index]);
+    }
+
+    @Override
+    public int putAll(T[] src, int off, int len) {
+        int done = tryPutAll(src, off, len);
+        if (done > 0)
+            waitStrategy.signalAll();
+        return done;
+    }
+
+    @Override
+    public int drain(Consumer<? super T> action, int limit) {
+        int done;
+        try {
+            done = tryDrain(action, limit);
+        } catch (RuntimeException | Error e) {
+            waitStrategy.signalAll(); // elements may have been removed before the action failed
+            throw e;
+        }
+        if (done > 0)
+            waitStrategy.signalAll();
+        return done;
+    }
+
+    /*
+     * The batch operations copy the elements in at most two contiguous chunks
+     * and update the positions and the count only once per batch.
+     */
+    private synchronized int tryPutAll(T[] src, int off, int len) {
+        Objects.checkFromIndexSize(off, len, src.length);
+        int batchSize = Math.min(len, items.length - count);
+        int firstChunk = Math.min(batchSize, items.length - insertPosition);
+        System.arraycopy(src, off, items, insertPosition, firstChunk);
+        System.arraycopy(src, off + firstChunk, items, 0, batchSize - firstChunk);
+        insertPosition = (insertPosition + batchSize) % items.length;
+        count += batchSize;
+        if (batchSize > 0)
+            metrics.recordPut(batchSize, count);
+        return batchSize;
+    }
+
+    /*
+     * The action is called while holding the monitor of the buffer,
+     * therefore it should not block.
+     */
+    private synchronized int tryDrain(Consumer<? super T> action, int limit) {
+        int batchSize = Math.min(limit, count);
+        int done = 0;
+        try {
+            for (; done < batchSize; done++) {
+                action.accept(items[(outputPosition + done) % items.length]);
+            }
+        } finally {
+            // if the action fails, only the elements already passed on are removed
+            outputPosition = (outputPosition + done) % items.length;
+            count -= done;
+            metrics.recordGet(done);
         }
+        return done;
+    }
+
+    public synchronized boolean empty() {
+        return count == 0;
+    }
+
+    public synchronized boolean full() {
+        return count >= items.length;
+    }
+
+    public synchronized int count() {
+        return count;
     }
 
 }
@@ -0,0 +1,107 @@
+package ch.zhaw.prog2.circularbuffer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Circular buffer storing int values without boxing them, with the blocking and non-blocking
+ * operations of {@link Buffer} for int values.
+ * It supports exactly one producer and one consumer thread, so it cannot replace the buffer of
+ * CircBufferTest with its several producers and consumers (see SpscBufferTest instead).
+ * As there is no null value to signal an empty buffer, the timed poll and the non-blocking drain()
+ * pass the values to an action instead of returning them.
+ */
+public class IntCircularBuffer extends AbstractPrimitiveRingBuffer<int[]> {
+
+    public IntCircularBuffer(int bufferSize) {
+        this(bufferSize, new ParkingWaitStrategy());
+    }
+
+    public IntCircularBuffer(int bufferSize, WaitStrategy waitStrategy) {
+        super(bufferSize, waitStrategy, int[]::new);
+    }
+
+    /**
+     * Puts the value into the buffer, waiting while the buffer is full.
+     */
+    public void put(int item) throws InterruptedException {
+        while (!tryOffer(item))
+            awaitNotFull(Long.MAX_VALUE);
+    }
+
+    /**
+     * Puts the value into the buffer if it is not full.
+     *
+     * @return false if the buffer is full
+     */
+    public boolean offer(int item) {
+        if (tryOffer(item))
+            return true;
+        metrics.recordRejectedPut();
+        return false;
+    }
+
+    /* like offer, but not counted as rejected put, for the attempts of the blocking operations */
+    private boolean tryOffer(int item) {
+        long position = nextWritable();
+        if (position < 0)
+            return false;
+        items[index(position)] = item;
+        publish(position);
+        return true;
+    }
+
+    /**
+     * Puts the value into the buffer, waiting at most the given time while the buffer is full.
+     *
+     * @return false if the timeout elapsed
+     */
+    public boolean offer(int item, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!tryOffer(item)) {
+            if (!awaitNotFullUntil(deadline))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Removes the oldest value, waiting while the buffer is empty.
+     */
+    public int get() throws InterruptedException {
+        long position;
+        while ((position = nextReadable()) < 0)
+            awaitNotEmpty(Long.MAX_VALUE);
+        int item = items[index(position)];
+        release(position);
+        return item;
+    }
+
+    /**
+     * Removes the oldest value and passes it to the action, waiting at most the given time
+     * while the buffer is empty.
+     *
+     * @return false if the timeout elapsed
+     */
+    public boolean poll(long timeout, TimeUnit unit, IntConsumer action) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long position;
+        while ((position = nextReadable()) < 0) {
+            if (!awaitNotEmptyUntil(deadline))
+                return false;
+        }
+        int item = items[index(position)];
+        release(position);
+        action.accept(item);
+        return true;
+    }
+
+    /**
+     * Passes up to limit values to the action and removes them.
+     *
+     * @return number of values consumed
+     */
+    public int drain(IntConsumer action, int limit) {
+        return drainSlots(slot -> action.accept(items[slot]), limit);
+    }
+}
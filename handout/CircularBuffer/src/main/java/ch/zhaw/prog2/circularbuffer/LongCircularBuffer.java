@@ -0,0 +1,107 @@
+package ch.zhaw.prog2.circularbuffer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Circular buffer storing long values without boxing them, with the blocking and non-blocking
+ * operations of {@link Buffer} for long values.
+ * It supports exactly one producer and one consumer thread, so it cannot replace the buffer of
+ * CircBufferTest with its several producers and consumers (see SpscBufferTest instead).
+ * As there is no null value to signal an empty buffer, the timed poll and the non-blocking drain()
+ * pass the values to an action instead of returning them.
+ */
+public class LongCircularBuffer extends AbstractPrimitiveRingBuffer<long[]> {
+
+    public LongCircularBuffer(int bufferSize) {
+        this(bufferSize, new ParkingWaitStrategy());
+    }
+
+    public LongCircularBuffer(int bufferSize, WaitStrategy waitStrategy) {
+        super(bufferSize, waitStrategy, long[]::new);
+    }
+
+    /**
+     * Puts the value into the buffer, waiting while the buffer is full.
+     */
+    public void put(long item) throws InterruptedException {
+        while (!tryOffer(item))
+            awaitNotFull(Long.MAX_VALUE);
+    }
+
+    /**
+     * Puts the value into the buffer if it is not full.
+     *
+     * @return false if the buffer is full
+     */
+    public boolean offer(long item) {
+        if (tryOffer(item))
+            return true;
+        metrics.recordRejectedPut();
+        return false;
+    }
+
+    /* like offer, but not counted as rejected put, for the attempts of the blocking operations */
+    private boolean tryOffer(long item) {
+        long position = nextWritable();
+        if (position < 0)
+            return false;
+        items[index(position)] = item;
+        publish(position);
+        return true;
+    }
+
+    /**
+     * Puts the value into the buffer, waiting at most the given time while the buffer is full.
+     *
+     * @return false if the timeout elapsed
+     */
+    public boolean offer(long item, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!tryOffer(item)) {
+            if (!awaitNotFullUntil(deadline))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Removes the oldest value, waiting while the buffer is empty.
+     */
+    public long get() throws InterruptedException {
+        long position;
+        while ((position = nextReadable()) < 0)
+            awaitNotEmpty(Long.MAX_VALUE);
+        long item = items[index(position)];
+        release(position);
+        return item;
+    }
+
+    /**
+     * Removes the oldest value and passes it to the action, waiting at most the given time
+     * while the buffer is empty.
+     *
+     * @return false if the timeout elapsed
+     */
+    public boolean poll(long timeout, TimeUnit unit, LongConsumer action) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long position;
+        while ((position = nextReadable()) < 0) {
+            if (!awaitNotEmptyUntil(deadline))
+                return false;
+        }
+        long item = items[index(position)];
+        release(position);
+        action.accept(item);
+        return true;
+    }
+
+    /**
+     * Passes up to limit values to the action and removes them.
+     *
+     * @return number of values consumed
+     */
+    public int drain(LongConsumer action, int limit) {
+        return drainSlots(slot -> action.accept(items[slot]), limit);
+    }
+}
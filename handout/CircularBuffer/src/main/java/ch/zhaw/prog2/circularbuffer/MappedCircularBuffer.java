@@ -0,0 +1,349 @@
+package ch.zhaw.prog2.circularbuffer;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Circular buffer of byte[] records, stored in a memory mapped file.
+ * The content survives a restart and the file can be opened by two processes
+ * on the same host at the same time, one producing and one consuming.
+ * <p>
+ * File layout (native byte order):
+ * <pre>
+ *   0: magic, capacity           (header, written once)
+ *  64: head, number of gets      (written by the consumer only)
+ * 128: tail, number of puts      (written by the producer only)
+ * 192: data, capacity bytes      (records: int length, bytes, padded to 8 bytes)
+ * </pre>
+ * A record is written before the tail is advanced with release semantics,
+ * therefore a reader never sees a partially written record, even after a crash of a process.
+ * After a crash of the operating system, only the content written to the disk by
+ * {@link #force()} is guaranteed to survive.
+ * If a record does not fit into the rest of the data region, a padding marker
+ * is written and the record starts again at the beginning.
+ * The numbers of gets and puts are updated just before head resp. tail, so a crash between the two
+ * updates leaves the count one too high; it is repaired when the file is opened by the only process.
+ * Call {@link #force()} to write the content to the disk.
+ */
+public class MappedCircularBuffer implements Buffer<byte[]>, AutoCloseable {
+    private static final int MAGIC = 0x43425546; // "CBUF"
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int HEAD_OFFSET = 64;
+    private static final int GET_COUNT_OFFSET = 72;
+    private static final int TAIL_OFFSET = 128;
+    private static final int PUT_COUNT_OFFSET = 136;
+    private static final int DATA_OFFSET = 192;
+    private static final int RECORD_HEADER = Integer.BYTES;
+    private static final int ALIGNMENT = Long.BYTES;
+    private static final int PADDING = -1;
+    // byte beyond the end of the file, locked shared by every process which has the file open
+    private static final long USERS_LOCK_POSITION = Long.MAX_VALUE - 1;
+    // the count for the high water mark is only sampled every 64 puts, as it reads the counter of the consumer
+    private static final int COUNT_SAMPLE_MASK = 63;
+
+    // atomic access to the long values of the header, works across processes
+    private static final VarHandle LONG =
+        MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final FileChannel channel;
+    private final FileLock usersLock; // null if the file is already open in this JVM
+    private final MappedByteBuffer memory;
+    private final int capacity;
+    private final WaitStrategy waitStrategy;
+    private final BufferMetrics metrics;
+    // each side works on its own view, as the position of a ByteBuffer is not thread-safe
+    private final ByteBuffer producerView;
+    private final ByteBuffer consumerView;
+    // created once, as the blocking operations may wait very often;
+    // the length of the record waited for is set and read by the producer only
+    private int awaitedLength;
+    private final BooleanSupplier awaitedRecordFits = () -> fits(awaitedLength);
+    private final BooleanSupplier notEmpty = () -> !empty();
+
+    public MappedCircularBuffer(Path file, int capacity) throws IOException {
+        this(file, capacity, new ParkingWaitStrategy());
+    }
+
+    /**
+     * Opens the buffer in the given file or creates it, if the file does not exist yet.
+     * Only wait strategies which check the condition by themselves (spinning, parking)
+     * notice changes made by another process.
+     *
+     * @param capacity size of the data region in bytes, rounded up to a multiple of 8
+     */
+    public MappedCircularBuffer(Path file, int capacity, WaitStrategy waitStrategy) throws IOException {
+        if (capacity <= 0 || capacity > Integer.MAX_VALUE - DATA_OFFSET - ALIGNMENT)
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        this.capacity = align(capacity);
+        this.waitStrategy = waitStrategy;
+        this.metrics = new BufferMetrics(this.capacity);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            // the lock prevents two processes from initializing the file at the same time
+            FileLock lock = channel.lock(0, DATA_OFFSET, false);
+            try {
+                // check the header before mapping, as mapping a larger region would grow the file
+                boolean initialized = false;
+                if (channel.size() >= DATA_OFFSET) {
+                    ByteBuffer header = ByteBuffer.allocate(CAPACITY_OFFSET + Integer.BYTES).order(ByteOrder.nativeOrder());
+                    while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                        // read the whole header
+                    }
+                    initialized = header.getInt(MAGIC_OFFSET) == MAGIC;
+                    if (initialized && header.getInt(CAPACITY_OFFSET) != this.capacity)
+                        throw new IOException("file was created with capacity " + header.getInt(CAPACITY_OFFSET));
+                }
+                this.memory = channel.map(FileChannel.MapMode.READ_WRITE, 0, DATA_OFFSET + this.capacity);
+                memory.order(ByteOrder.nativeOrder());
+                if (!initialized) {
+                    LONG.setRelease(memory, HEAD_OFFSET, 0L);
+                    LONG.setRelease(memory, GET_COUNT_OFFSET, 0L);
+                    LONG.setRelease(memory, TAIL_OFFSET, 0L);
+                    LONG.setRelease(memory, PUT_COUNT_OFFSET, 0L);
+                    memory.putInt(CAPACITY_OFFSET, this.capacity);
+                    memory.putInt(MAGIC_OFFSET, MAGIC);
+                    memory.force();
+                } else if (onlyUser()) {
+                    repairCounters();
+                }
+                this.usersLock = lockUsers();
+            } finally {
+                lock.release();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.producerView = memory.duplicate();
+        this.consumerView = memory.duplicate();
+    }
+
+    private static int align(int size) {
+        return (size + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    /* whether no other process and no other instance in this JVM has the file open */
+    private boolean onlyUser() throws IOException {
+        try {
+            FileLock exclusive = channel.tryLock(USERS_LOCK_POSITION, 1, false);
+            if (exclusive == null)
+                return false;
+            exclusive.release();
+            return true;
+        } catch (OverlappingFileLockException e) {
+            return false; // open in this JVM
+        }
+    }
+
+    private FileLock lockUsers() throws IOException {
+        try {
+            return channel.lock(USERS_LOCK_POSITION, 1, true);
+        } catch (OverlappingFileLockException e) {
+            return null; // held by the instance already open in this JVM
+        }
+    }
+
+    /*
+     * Head and tail always match the records, so the number of puts is recomputed
+     * from the number of gets and the records between head and tail.
+     */
+    private void repairCounters() {
+        long position = head();
+        long end = tail();
+        long records = 0;
+        while (position < end) {
+            int offset = (int) (position % capacity);
+            int length = memory.getInt(DATA_OFFSET + offset);
+            if (length == PADDING) {
+                position += capacity - offset;
+            } else if (length >= 0) {
+                position += align(RECORD_HEADER + length);
+                records++;
+            } else {
+                break; // corrupt, keep the counters
+            }
+        }
+        if (position == end)
+            LONG.setRelease(memory, PUT_COUNT_OFFSET, (long) LONG.getAcquire(memory, GET_COUNT_OFFSET) + records);
+    }
+
+    private long head() {
+        return (long) LONG.getAcquire(memory, HEAD_OFFSET);
+    }
+
+    private long tail() {
+        return (long) LONG.getAcquire(memory, TAIL_OFFSET);
+    }
+
+    /* number of bytes to skip at the end of the data region, if the record does not fit there */
+    private int paddingFor(long position, int recordSize) {
+        int remaining = capacity - (int) (position % capacity);
+        return recordSize > remaining ? remaining : 0;
+    }
+
+    private boolean fits(int length) {
+        int recordSize = align(RECORD_HEADER + length);
+        long currentTail = tail();
+        return currentTail + paddingFor(currentTail, recordSize) + recordSize - head() <= capacity;
+    }
+
+    public boolean offer(byte[] record) {
+        if (tryOffer(record))
+            return true;
+        metrics.recordRejectedPut();
+        return false;
+    }
+
+    @Override
+    public boolean tryOffer(byte[] record) {
+        Objects.requireNonNull(record);
+        int recordSize = align(RECORD_HEADER + record.length);
+        if (recordSize > capacity)
+            throw new IllegalArgumentException("record of " + record.length + " bytes does not fit into the buffer");
+        long currentTail = tail();
+        int padding = paddingFor(currentTail, recordSize);
+        if (currentTail + padding + recordSize - head() > capacity)
+            return false;
+        int offset = (int) (currentTail % capacity);
+        if (padding > 0) {
+            memory.putInt(DATA_OFFSET + offset, PADDING);
+            offset = 0;
+        }
+        memory.putInt(DATA_OFFSET + offset, record.length);
+        producerView.position(DATA_OFFSET + offset + RECORD_HEADER);
+        producerView.put(record);
+        long puts = (long) LONG.get(memory, PUT_COUNT_OFFSET) + 1;
+        LONG.setRelease(memory, PUT_COUNT_OFFSET, puts);
+        LONG.setRelease(memory, TAIL_OFFSET, currentTail + padding + recordSize);
+        metrics.recordPut(1);
+        if ((puts & COUNT_SAMPLE_MASK) == 0)
+            metrics.recordCount(count());
+        waitStrategy.signalAll();
+        return true;
+    }
+
+    public byte[] poll() {
+        long currentHead = head();
+        if (currentHead == tail()) {
+            metrics.recordEmptyPoll();
+            return null;
+        }
+        int offset = (int) (currentHead % capacity);
+        int length = memory.getInt(DATA_OFFSET + offset);
+        if (length == PADDING) {
+            currentHead += capacity - offset;
+            offset = 0;
+            length = memory.getInt(DATA_OFFSET);
+        }
+        byte[] record = new byte[length];
+        consumerView.position(DATA_OFFSET + offset + RECORD_HEADER);
+        consumerView.get(record);
+        LONG.setRelease(memory, GET_COUNT_OFFSET, (long) LONG.get(memory, GET_COUNT_OFFSET) + 1);
+        LONG.setRelease(memory, HEAD_OFFSET, currentHead + align(RECORD_HEADER + length));
+        metrics.recordGet(1);
+        waitStrategy.signalAll();
+        return record;
+    }
+
+    /*
+     * Whether a record fits depends on its size, so put waits for enough free space
+     * instead of waiting for the buffer to be not full.
+     */
+    @Override
+    public boolean put(byte[] record) throws InterruptedException {
+        while (!tryOffer(record))
+            awaitFits(record.length, Long.MAX_VALUE);
+        return true;
+    }
+
+    @Override
+    public boolean offer(byte[] record, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!tryOffer(record)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !awaitFits(record.length, remaining)) {
+                metrics.recordRejectedPut();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean awaitNotFull(long timeoutNanos) throws InterruptedException {
+        return awaitFits(0, timeoutNanos);
+    }
+
+    @Override
+    public boolean awaitNotEmpty(long timeoutNanos) throws InterruptedException {
+        return await(notEmpty, timeoutNanos);
+    }
+
+    private boolean awaitFits(int length, long timeoutNanos) throws InterruptedException {
+        awaitedLength = length;
+        return await(awaitedRecordFits, timeoutNanos);
+    }
+
+    private boolean await(BooleanSupplier condition, long timeoutNanos) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            return waitStrategy.await(condition, timeoutNanos);
+        } finally {
+            metrics.recordWait(System.nanoTime() - start);
+        }
+    }
+
+    public WaitStrategy waitStrategy() {
+        return waitStrategy;
+    }
+
+    /**
+     * The metrics count the operations of this process only.
+     */
+    public BufferMetrics metrics() {
+        return metrics;
+    }
+
+    public boolean empty() {
+        return head() == tail();
+    }
+
+    /* full if not even an empty record fits */
+    public boolean full() {
+        return !fits(0);
+    }
+
+    public int count() {
+        long gets = (long) LONG.getAcquire(memory, GET_COUNT_OFFSET);
+        long puts = (long) LONG.getAcquire(memory, PUT_COUNT_OFFSET);
+        return (int) Math.max(0, puts - gets);
+    }
+
+    /**
+     * Writes the content of the buffer to the disk.
+     */
+    public void force() {
+        memory.force();
+    }
+
+    public void close() throws IOException {
+        force();
+        if (usersLock != null)
+            usersLock.release();
+        channel.close();
+    }
+}
@@ -0,0 +1,31 @@
+package ch.zhaw.prog2.circularbuffer;
+
+/**
+ * Thread printing the metrics of a buffer periodically to the console.
+ */
+public class MetricsReporter extends Thread {
+    private final BufferMetrics metrics;
+    private final long periodMillis;
+
+    public MetricsReporter(String name, BufferMetrics metrics, long periodMillis) {
+        super(name);
+        this.metrics = metrics;
+        this.periodMillis = periodMillis;
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        BufferStats previous = metrics.snapshot();
+        try {
+            while (true) {
+                Thread.sleep(periodMillis);
+                BufferStats current = metrics.snapshot();
+                System.out.println(current + " | " + current.formatRates(previous));
+                previous = current;
+            }
+        } catch (InterruptedException e) {
+            System.out.println(getName() + " stopped");
+        }
+    }
+}
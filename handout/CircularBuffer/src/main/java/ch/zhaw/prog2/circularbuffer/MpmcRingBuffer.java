@@ -0,0 +1,149 @@
+package ch.zhaw.prog2.circularbuffer;
+
+import java.lang.reflect.Array;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Lock-free bounded ring buffer for any number of producers and consumers
+ * (after the design of Dmitry Vyukov).
+ * Every slot carries a sequence number telling whose turn it is:
+ * <ul>
+ *     <li>sequence == position: the slot is free for the producer of this position</li>
+ *     <li>sequence == position + 1: the slot is filled for the consumer of this position</li>
+ * </ul>
+ * Producers resp. consumers claim a position by a CAS on the tail resp. head sequence.
+ * After writing resp. reading the element, the slot sequence is handed over to the other side.
+ */
+public class MpmcRingBuffer<T> extends AbstractRingBuffer implements Buffer<T> {
+    private final T[] items;
+    private final AtomicLongArray sequences;
+
+    public MpmcRingBuffer(Class<T> clazz, int bufferSize) {
+        this(clazz, bufferSize, new ParkingWaitStrategy());
+    }
+
+    @SuppressWarnings("unchecked")
+    public MpmcRingBuffer(Class<T> clazz, int bufferSize, WaitStrategy waitStrategy) {
+        super(bufferSize, waitStrategy);
+        this.items = (T[]) Array.newInstance(clazz, capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++)
+            sequences.set(i, i);
+    }
+
+    public boolean offer(T item) {
+        if (tryOffer(item))
+            return true;
+        metrics.recordRejectedPut();
+        return false;
+    }
+
+    @Override
+    public boolean tryOffer(T item) {
+        Objects.requireNonNull(item);
+        long position = tail.get();
+        while (true) {
+            int index = index(position);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    items[index] = item;
+                    sequences.lazySet(index, position + 1);
+                    published(1, position + 1);
+                    return true;
+                }
+                position = tail.get(); // another producer was faster
+            } else if (difference < 0) {
+                return false; // the slot still contains the element of the previous round
+            } else {
+                position = tail.get(); // slot was already taken, reload position
+            }
+        }
+    }
+
+    public T poll() {
+        long position = head.get();
+        while (true) {
+            int index = index(position);
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    T item = items[index];
+                    items[index] = null;
+                    // free the slot for the producer of the next round
+                    sequences.lazySet(index, position + capacity);
+                    consumed(1);
+                    return item;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                metrics.recordEmptyPoll();
+                return null; // the slot has not been filled yet
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /*
+     * A producer first checks how many consecutive slots are free for this round
+     * and then claims all of them with a single CAS on the tail. The slots can not
+     * be taken by someone else in between, as this requires claiming the same positions.
+     */
+    @Override
+    public int putAll(T[] src, int off, int len) {
+        Objects.checkFromIndexSize(off, len, src.length);
+        while (true) {
+            long position = tail.get();
+            int batchSize = 0;
+            while (batchSize < len && batchSize < capacity
+                    && sequences.get(index(position + batchSize)) == position + batchSize)
+                batchSize++;
+            if (batchSize == 0 && (len == 0 || sequences.get(index(position)) < position))
+                return 0; // nothing to put or the buffer is full
+            if (batchSize > 0 && tail.compareAndSet(position, position + batchSize)) {
+                for (int i = 0; i < batchSize; i++) {
+                    int index = index(position + i);
+                    items[index] = src[off + i];
+                    sequences.lazySet(index, position + i + 1);
+                }
+                published(batchSize, position + batchSize);
+                return batchSize;
+            }
+        }
+    }
+
+    /*
+     * Claims all consecutive filled slots (up to limit) with a single CAS on the head.
+     */
+    @Override
+    public int drain(Consumer<? super T> action, int limit) {
+        while (true) {
+            long position = head.get();
+            int batchSize = 0;
+            while (batchSize < limit && batchSize < capacity
+                    && sequences.get(index(position + batchSize)) == position + batchSize + 1)
+                batchSize++;
+            if (batchSize == 0 && (limit <= 0 || sequences.get(index(position)) < position + 1))
+                return 0; // nothing requested or the buffer is empty
+            if (batchSize > 0 && head.compareAndSet(position, position + batchSize)) {
+                // hand over all claimed slots before running the action,
+                // so a failing action can not block the producers forever
+                @SuppressWarnings("unchecked")
+                T[] claimed = (T[]) new Object[batchSize];
+                for (int i = 0; i < batchSize; i++) {
+                    int index = index(position + i);
+                    claimed[i] = items[index];
+                    items[index] = null;
+                    sequences.lazySet(index, position + i + capacity);
+                }
+                consumed(batchSize);
+                for (T item : claimed)
+                    action.accept(item);
+                return batchSize;
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package ch.zhaw.prog2.circularbuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circular buffer storing fixed-size records in a direct (off-heap) ByteBuffer,
+ * for one producer and one consumer thread.
+ * The records are copied in and out of the buffer, so no objects are created per element.
+ */
+public class OffHeapCircularBuffer extends AbstractSpscRingBuffer {
+
+    /**
+     * Callback to read a record in place, without copying it.
+     */
+    public interface RecordConsumer {
+        /**
+         * @param records read-only view of the buffer memory, must be read with absolute get methods
+         * @param offset  index of the first byte of the record
+         */
+        void accept(ByteBuffer records, int offset);
+    }
+
+    private final int recordSize;
+    // each side works on its own view, as position and limit of a ByteBuffer are not thread-safe
+    private final ByteBuffer producerView;
+    private final ByteBuffer consumerView;
+
+    public OffHeapCircularBuffer(int recordSize, int bufferSize) {
+        this(recordSize, bufferSize, new ParkingWaitStrategy());
+    }
+
+    public OffHeapCircularBuffer(int recordSize, int bufferSize, WaitStrategy waitStrategy) {
+        super(bufferSize, waitStrategy);
+        if (recordSize <= 0)
+            throw new IllegalArgumentException("record size must be positive");
+        if ((long) recordSize * capacity > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("buffer exceeds 2GB");
+        this.recordSize = recordSize;
+        ByteBuffer memory = ByteBuffer.allocateDirect(recordSize * capacity);
+        this.producerView = memory.duplicate();
+        this.consumerView = memory.asReadOnlyBuffer();
+    }
+
+    public int recordSize() {
+        return recordSize;
+    }
+
+    private int offset(long position) {
+        return index(position) * recordSize;
+    }
+
+    /**
+     * Copies one record of recordSize bytes from src, starting at index off,
+     * waiting while the buffer is full.
+     */
+    public void put(byte[] src, int off) throws InterruptedException {
+        while (!tryOffer(src, off))
+            awaitNotFull(Long.MAX_VALUE);
+    }
+
+    /**
+     * Copies one record of recordSize bytes from src, starting at index off.
+     *
+     * @return false if the buffer is full
+     */
+    public boolean offer(byte[] src, int off) {
+        if (tryOffer(src, off))
+            return true;
+        metrics.recordRejectedPut();
+        return false;
+    }
+
+    /**
+     * Copies one record of recordSize bytes from src, starting at index off,
+     * waiting at most the given time while the buffer is full.
+     *
+     * @return false if the timeout elapsed
+     */
+    public boolean offer(byte[] src, int off, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!tryOffer(src, off)) {
+            if (!awaitNotFullUntil(deadline))
+                return false;
+        }
+        return true;
+    }
+
+    /* like offer, but not counted as rejected put, for the attempts of the blocking operations */
+    private boolean tryOffer(byte[] src, int off) {
+        Objects.checkFromIndexSize(off, recordSize, src.length);
+        long currentTail = tail.getPlain();
+        if (writable(currentTail, 1) == 0)
+            return false;
+        producerView.position(offset(currentTail));
+        producerView.put(src, off, recordSize);
+        tail.setRelease(currentTail + 1);
+        published(1, currentTail + 1);
+        return true;
+    }
+
+    /**
+     * Copies one record of recordSize bytes from the position of src and advances it.
+     *
+     * @return false if the buffer is full
+     */
+    public boolean offer(ByteBuffer src) {
+        if (src.remaining() < recordSize)
+            throw new IllegalArgumentException("less than " + recordSize + " bytes remaining");
+        long currentTail = tail.getPlain();
+        if (writable(currentTail, 1) == 0) {
+            metrics.recordRejectedPut();
+            return false;
+        }
+        int oldLimit = src.limit();
+        src.limit(src.position() + recordSize);
+        producerView.position(offset(currentTail));
+        producerView.put(src);
+        src.limit(oldLimit);
+        tail.setRelease(currentTail + 1);
+        published(1, currentTail + 1);
+        return true;
+    }
+
+    /**
+     * Copies the oldest record into dst, starting at index off,
+     * waiting while the buffer is empty.
+     */
+    public void get(byte[] dst, int off) throws InterruptedException {
+        while (!tryPoll(dst, off))
+            awaitNotEmpty(Long.MAX_VALUE);
+    }
+
+    /**
+     * Copies the oldest record into dst, starting at index off.
+     *
+     * @return false if the buffer is empty
+     */
+    public boolean poll(byte[] dst, int off) {
+        if (tryPoll(dst, off))
+            return true;
+        metrics.recordEmptyPoll();
+        return false;
+    }
+
+    /**
+     * Copies the oldest record into dst, starting at index off,
+     * waiting at most the given time while the buffer is empty.
+     *
+     * @return false if the timeout elapsed
+     */
+    public boolean poll(byte[] dst, int off, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!tryPoll(dst, off)) {
+            if (!awaitNotEmptyUntil(deadline))
+                return false;
+        }
+        return true;
+    }
+
+    /* like poll, but not counted as empty poll, for the attempts of the blocking operations */
+    private boolean tryPoll(byte[] dst, int off) {
+        Objects.checkFromIndexSize(off, recordSize, dst.length);
+        long currentHead = head.getPlain();
+        if (readable(currentHead, 1) == 0)
+            return false;
+        consumerView.position(offset(currentHead));
+        consumerView.get(dst, off, recordSize);
+        head.setRelease(currentHead + 1);
+        consumed(1);
+        return true;
+    }
+
+    /**
+     * Copies the oldest record to the position of dst and advances it.
+     *
+     * @return false if the buffer is empty
+     */
+    public boolean poll(ByteBuffer dst) {
+        if (dst.remaining() < recordSize)
+            throw new IllegalArgumentException("less than " + recordSize + " bytes remaining");
+        long currentHead = head.getPlain();
+        if (readable(currentHead, 1) == 0) {
+            metrics.recordEmptyPoll();
+            return false;
+        }
+        int start = offset(currentHead);
+        consumerView.limit(start + recordSize).position(start);
+        dst.put(consumerView);
+        consumerView.limit(consumerView.capacity());
+        head.setRelease(currentHead + 1);
+        consumed(1);
+        return true;
+    }
+
+    /**
+     * Passes up to limit records in place to the action and removes them.
+     *
+     * @return number of records consumed
+     */
+    public int drain(RecordConsumer action, int limit) {
+        long currentHead = head.getPlain();
+        int batchSize = readable(currentHead, limit);
+        int done = 0;
+        try {
+            for (; done < batchSize; done++)
+                action.accept(consumerView, offset(currentHead + done));
+        } finally {
+            head.setRelease(currentHead + done);
+            if (done > 0)
+                consumed(done);
+        }
+        return done;
+    }
+}
@@ -0,0 +1,48 @@
+package ch.zhaw.prog2.circularbuffer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Parks the waiting thread between the checks of the condition,
+ * doubling the park time from minParkNanos up to maxParkNanos (exponential backoff).
+ * Uses little CPU, but adds up to maxParkNanos of latency.
+ */
+public class ParkingWaitStrategy implements WaitStrategy {
+    private static final long DEFAULT_MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+    private static final long DEFAULT_MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final long minParkNanos;
+    private final long maxParkNanos;
+
+    public ParkingWaitStrategy() {
+        this(DEFAULT_MIN_PARK_NANOS, DEFAULT_MAX_PARK_NANOS);
+    }
+
+    public ParkingWaitStrategy(long minParkNanos, long maxParkNanos) {
+        if (minParkNanos <= 0 || maxParkNanos < minParkNanos)
+            throw new IllegalArgumentException("0 < minParkNanos <= maxParkNanos required");
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+    }
+
+    public boolean await(BooleanSupplier condition, long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        long parkNanos = minParkNanos;
+        while (!condition.getAsBoolean()) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                return false;
+            LockSupport.parkNanos(this, Math.min(parkNanos, remaining));
+            parkNanos = Math.min(2 * parkNanos, maxParkNanos);
+        }
+        return true;
+    }
+
+    public void signalAll() {
+        // nothing to do, the waiting threads wake up by themselves
+    }
+}
@@ -0,0 +1,61 @@
+package ch.zhaw.prog2.circularbuffer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/*
+ * The padding fields are spread over a small class hierarchy, because the JVM
+ * does not reorder fields across class boundaries. This keeps the value on its
+ * own cache line, so producers and consumers do not invalidate each other's lines.
+ */
+abstract class SequenceLeftPadding {
+    protected long p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class SequenceValue extends SequenceLeftPadding {
+    protected volatile long value;
+}
+
+/**
+ * A cache line padded, monotonically increasing counter used for the head and
+ * tail positions of the ring buffers.
+ */
+class Sequence extends SequenceValue {
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(SequenceValue.class, "value", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    protected long p11, p12, p13, p14, p15, p16, p17;
+
+    Sequence(long initialValue) {
+        VALUE.setRelease(this, initialValue);
+    }
+
+    /* plain read, only valid for the thread owning the sequence */
+    long getPlain() {
+        return (long) VALUE.get(this);
+    }
+
+    long getAcquire() {
+        return (long) VALUE.getAcquire(this);
+    }
+
+    long get() {
+        return value;
+    }
+
+    /* publishes all writes done before, without the cost of a full fence */
+    void setRelease(long newValue) {
+        VALUE.setRelease(this, newValue);
+    }
+
+    boolean compareAndSet(long expected, long newValue) {
+        return VALUE.compareAndSet(this, expected, newValue);
+    }
+}
@@ -0,0 +1,43 @@
+package ch.zhaw.prog2.circularbuffer;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Spins on the condition for a number of tries and then yields the CPU
+ * between the following checks.
+ */
+public class SpinYieldWaitStrategy implements WaitStrategy {
+    private static final int DEFAULT_SPIN_TRIES = 100;
+
+    private final int spinTries;
+
+    public SpinYieldWaitStrategy() {
+        this(DEFAULT_SPIN_TRIES);
+    }
+
+    public SpinYieldWaitStrategy(int spinTries) {
+        this.spinTries = spinTries;
+    }
+
+    public boolean await(BooleanSupplier condition, long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        int tries = 0;
+        while (!condition.getAsBoolean()) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if (deadline - System.nanoTime() <= 0)
+                return false;
+            if (tries < spinTries) {
+                tries++;
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        return true;
+    }
+
+    public void signalAll() {
+        // nothing to do, the waiting threads poll the condition
+    }
+}
@@ -0,0 +1,80 @@
+package ch.zhaw.prog2.circularbuffer;
+
+/**
+ * Producer/consumer setup of CircBufferTest for the primitive buffers, which support
+ * exactly one producer and one consumer thread.
+ * The producer puts timestamps into a LongCircularBuffer without boxing them,
+ * the consumer prints how long they waited in the buffer.
+ */
+public class SpscBufferTest {
+    public static void main(String[] args) {
+        final int capacity = 15; // Number of buffer items
+        final int maxProdTime = 500; // max. production time for one item
+        final int maxConsTime = 500; // max. consumption time for one item
+
+        try {
+            // waiting threads are blocked as the production takes long
+            LongCircularBuffer buffer = new LongCircularBuffer(capacity, new BlockingWaitStrategy());
+
+            Consumer consumer = new Consumer("Consumer", buffer, maxConsTime);
+            consumer.start();
+            Producer producer = new Producer("Producer", buffer, maxProdTime);
+            producer.start();
+
+            MetricsReporter reporter = new MetricsReporter("Reporter", buffer.metrics(), 1000);
+            reporter.start();
+            producer.join();
+        } catch (Exception logOrIgnore) {
+            System.out.println(logOrIgnore.getMessage());
+        }
+    }
+
+    private static class Producer extends Thread {
+        private final LongCircularBuffer buffer;
+        private final int prodTime;
+
+        public Producer(String name, LongCircularBuffer buffer, int prodTime) {
+            super(name);
+            this.buffer = buffer;
+            this.prodTime = prodTime;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    buffer.put(System.nanoTime());
+                    Thread.sleep((int) (Math.random() * prodTime));
+                }
+            } catch (InterruptedException e) {
+                System.out.println(getName() + " interrupted: " + e.getMessage());
+            }
+        }
+    }
+
+    private static class Consumer extends Thread {
+        private final LongCircularBuffer buffer;
+        private final int consTime;
+
+        public Consumer(String name, LongCircularBuffer buffer, int consTime) {
+            super(name);
+            this.buffer = buffer;
+            this.consTime = consTime;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    long timestamp = buffer.get();
+                    long waited = System.nanoTime() - timestamp;
+                    System.out.printf("%s: value waited %.1f ms in the buffer%n", getName(), waited / 1e6);
+                    Thread.sleep((int) (Math.random() * consTime));
+                }
+            } catch (InterruptedException e) {
+                System.out.println(getName() + " interrupted: " + e.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package ch.zhaw.prog2.circularbuffer;
+
+import java.lang.reflect.Array;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Lock-free ring buffer for exactly one producer and one consumer thread.
+ */
+public class SpscRingBuffer<T> extends AbstractSpscRingBuffer implements Buffer<T> {
+    private final T[] items;
+
+    public SpscRingBuffer(Class<T> clazz, int bufferSize) {
+        this(clazz, bufferSize, new ParkingWaitStrategy());
+    }
+
+    @SuppressWarnings("unchecked")
+    public SpscRingBuffer(Class<T> clazz, int bufferSize, WaitStrategy waitStrategy) {
+        super(bufferSize, waitStrategy);
+        this.items = (T[]) Array.newInstance(clazz, capacity);
+    }
+
+    public boolean offer(T item) {
+        if (tryOffer(item))
+            return true;
+        metrics.recordRejectedPut();
+        return false;
+    }
+
+    @Override
+    public boolean tryOffer(T item) {
+        Objects.requireNonNull(item);
+        long currentTail = tail.getPlain();
+        if (writable(currentTail, 1) == 0)
+            return false;
+        items[index(currentTail)] = item;
+        tail.setRelease(currentTail + 1);
+        published(1, currentTail + 1);
+        return true;
+    }
+
+    public T poll() {
+        long currentHead = head.getPlain();
+        if (readable(currentHead, 1) == 0) {
+            metrics.recordEmptyPoll();
+            return null;
+        }
+        int index = index(currentHead);
+        T item = items[index];
+        items[index] = null; // do not keep consumed elements reachable
+        head.setRelease(currentHead + 1);
+        consumed(1);
+        return item;
+    }
+
+    @Override
+    public int putAll(T[] src, int off, int len) {
+        Objects.checkFromIndexSize(off, len, src.length);
+        long currentTail = tail.getPlain();
+        int batchSize = writable(currentTail, len);
+        int start = index(currentTail);
+        int firstChunk = Math.min(batchSize, capacity - start);
+        System.arraycopy(src, off, items, start, firstChunk);
+        System.arraycopy(src, off + firstChunk, items, 0, batchSize - firstChunk);
+        tail.setRelease(currentTail + batchSize); // publish the whole batch at once
+        if (batchSize > 0)
+            published(batchSize, currentTail + batchSize);
+        return batchSize;
+    }
+
+    @Override
+    public int drain(Consumer<? super T> action, int limit) {
+        long currentHead = head.getPlain();
+        int batchSize = readable(currentHead, limit);
+        int done = 0;
+        try {
+            for (; done < batchSize; done++) {
+                int index = index(currentHead + done);
+                T item = items[index];
+                items[index] = null;
+                action.accept(item);
+            }
+        } finally {
+            head.setRelease(currentHead + done); // release all consumed slots at once
+            if (done > 0)
+                consumed(done);
+        }
+        return done;
+    }
+}
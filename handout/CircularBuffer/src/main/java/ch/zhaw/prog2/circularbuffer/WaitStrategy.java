@@ -0,0 +1,26 @@
+package ch.zhaw.prog2.circularbuffer;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Defines how a thread waits in the blocking buffer operations until the buffer
+ * is no longer full resp. empty. This allows to trade CPU usage for latency.
+ */
+public interface WaitStrategy {
+    /**
+     * Waits until the condition holds or the timeout elapsed.
+     * The condition may already be false again when the caller checks it.
+     *
+     * @param condition    condition to wait for
+     * @param timeoutNanos maximal time to wait in nanoseconds
+     * @return true if the condition holds, false if the timeout elapsed
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    boolean await(BooleanSupplier condition, long timeoutNanos) throws InterruptedException;
+
+    /**
+     * Wakes up the waiting threads after the state of the buffer changed.
+     * This must not be called while holding a lock used by the condition.
+     */
+    void signalAll();
+}
@@ -0,0 +1,59 @@
+package ch.zhaw.prog2.mandelbrot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of the engine for the image of the UI (600x500 pixels) with a rising number of threads.
+ * Use at least up to twice the number of processors, e.g.:
+ * gradle jmh -PjmhInclude=EngineScaling
+ * For the load balance of a single run, see the --stats and --scaling options of {@link MandelbrotCli}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class EngineScalingBenchmark {
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int threads;
+
+    @Param({"false", "true"})
+    public boolean progressive;
+
+    @Param({"none", "all"})
+    public String shortcuts;
+
+    private MandelbrotEngine engine;
+    private Viewport viewport;
+
+    @Setup(Level.Trial)
+    public void createEngine() {
+        engine = new MandelbrotEngine(threads);
+        engine.setShortcuts(Shortcuts.parse(shortcuts));
+        double[] area = MandelbrotCli.DEFAULT_AREA;
+        viewport = new Viewport(area[0], area[1], area[2], area[3], 600, 500);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeEngine() {
+        engine.close();
+    }
+
+    @Benchmark
+    public int[] render() {
+        if (progressive)
+            return engine.renderProgressive(viewport, MandelbrotCli.DEFAULT_ITERATIONS, (x, y, w, h, counts) -> { },
+                () -> false, null);
+        return engine.render(viewport, MandelbrotCli.DEFAULT_ITERATIONS);
+    }
+}
@@ -0,0 +1,78 @@
+package ch.zhaw.prog2.mandelbrot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of the iteration kernels for a 256x256 image in a single thread, without the engine.
+ * The areas differ in their share of expensive pixels:
+ * <ul>
+ *     <li>full: the whole set, mostly cheap pixels outside and the large cardioid inside</li>
+ *     <li>boundary: the area of the UI, nearly all pixels close to the boundary</li>
+ *     <li>inside: a part of the main cardioid, every pixel takes maxIterations</li>
+ * </ul>
+ * Run with: gradle jmh -PjmhInclude=Kernel
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class KernelBenchmark {
+    private static final int SIZE = 256;
+
+    @Param({"SCALAR", "LANES"})
+    public String kernel;
+
+    @Param({"1000", "10000"})
+    public int maxIterations;
+
+    @Param({"full", "boundary", "inside"})
+    public String area;
+
+    @Param({"none", "all"})
+    public String shortcuts;
+
+    private IterationKernel iterationKernel;
+    private Shortcuts rowShortcuts;
+    private Viewport viewport;
+    private int[] iterations;
+
+    @Setup
+    public void prepare() {
+        iterationKernel = IterationKernel.fromName(kernel);
+        rowShortcuts = Shortcuts.parse(shortcuts);
+        switch (area) {
+            case "full":
+                viewport = new Viewport(-2.0, 1.0, -1.5, 1.5, SIZE, SIZE);
+                break;
+            case "boundary":
+                double[] bounds = MandelbrotCli.DEFAULT_AREA;
+                viewport = new Viewport(bounds[0], bounds[1], bounds[2], bounds[3], SIZE, SIZE);
+                break;
+            case "inside":
+                viewport = new Viewport(-0.3, -0.1, -0.1, 0.1, SIZE, SIZE);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown area " + area);
+        }
+        iterations = new int[SIZE * SIZE];
+    }
+
+    /* the rectangles shortcut works on tiles and is not used by the kernel itself */
+    @Benchmark
+    public long image() {
+        long computed = 0;
+        for (int row = 0; row < SIZE; row++) {
+            computed += iterationKernel.computeRow(viewport.xmin, viewport.dx(), viewport.y(row), 0, SIZE, 1,
+                maxIterations, rowShortcuts, iterations, row * SIZE);
+        }
+        return computed;
+    }
+}
@@ -0,0 +1,24 @@
+package ch.zhaw.prog2.mandelbrot;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Signals a computation to stop. Every job gets its own token, so cancelling
+ * one job can never affect another one, and a cancelled token stays cancelled.
+ */
+public class CancellationToken implements BooleanSupplier {
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean getAsBoolean() {
+        return cancelled;
+    }
+}
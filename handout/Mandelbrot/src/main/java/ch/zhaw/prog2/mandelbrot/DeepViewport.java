@@ -0,0 +1,48 @@
+package ch.zhaw.prog2.mandelbrot;
+
+import java.math.BigDecimal;
+
+/**
+ * The area of the complex plane shown in an image, for zooms beyond the precision of double.
+ * The center is given with arbitrary precision, the distance between two pixels as a double,
+ * which is enough down to about 1e-300. Instances are immutable.
+ */
+public class DeepViewport {
+    public final BigDecimal centerRe, centerIm;
+    public final double pixelSize;
+    public final int width, height;
+
+    public DeepViewport(BigDecimal centerRe, BigDecimal centerIm, double pixelSize, int width, int height) {
+        if (width < 2 || height < 2)
+            throw new IllegalArgumentException("image must be at least 2x2 pixels");
+        if (!(pixelSize > 0))
+            throw new IllegalArgumentException("pixel size must be positive");
+        this.centerRe = centerRe;
+        this.centerIm = centerIm;
+        this.pixelSize = pixelSize;
+        this.width = width;
+        this.height = height;
+    }
+
+    /** offset of the real part of the given column from the center */
+    public double offsetRe(int col) {
+        return (col - (width - 1) / 2.0) * pixelSize;
+    }
+
+    /** offset of the imaginary part of the given row from the center */
+    public double offsetIm(int row) {
+        return ((height - 1) / 2.0 - row) * pixelSize;
+    }
+
+    /**
+     * Number of decimal digits needed to tell neighbouring pixels apart, plus a safety margin.
+     */
+    public int precision() {
+        return Math.max(20, (int) Math.ceil(-Math.log10(pixelSize)) + 15);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("center %s %s i, pixel size %.3e, %dx%d px", centerRe, centerIm, pixelSize, width, height);
+    }
+}
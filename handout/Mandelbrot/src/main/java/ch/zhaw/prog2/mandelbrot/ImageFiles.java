@@ -0,0 +1,57 @@
+package ch.zhaw.prog2.mandelbrot;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes images given as ARGB pixels (row by row) to files.
+ */
+public final class ImageFiles {
+    private ImageFiles() {
+    }
+
+    /**
+     * Writes a PNG or PPM file, depending on the file name extension (.png or .ppm).
+     */
+    public static void write(Path file, int width, int height, int[] argb) throws IOException {
+        String name = file.getFileName().toString().toLowerCase();
+        if (name.endsWith(".png"))
+            writePng(file, width, height, argb);
+        else if (name.endsWith(".ppm"))
+            writePpm(file, width, height, argb);
+        else
+            throw new IllegalArgumentException("unknown image format: " + file);
+    }
+
+    public static void writePng(Path file, int width, int height, int[] argb) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, width, height, argb, 0, width);
+        if (!ImageIO.write(image, "png", file.toFile()))
+            throw new IOException("no PNG writer available");
+    }
+
+    /**
+     * Writes a binary PPM (P6) file, which needs no image library to be read or written.
+     */
+    public static void writePpm(Path file, int width, int height, int[] argb) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            out.write(("P6\n" + width + " " + height + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+            byte[] row = new byte[3 * width];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int pixel = argb[y * width + x];
+                    row[3 * x] = (byte) (pixel >> 16);
+                    row[3 * x + 1] = (byte) (pixel >> 8);
+                    row[3 * x + 2] = (byte) pixel;
+                }
+                out.write(row);
+            }
+        }
+    }
+}
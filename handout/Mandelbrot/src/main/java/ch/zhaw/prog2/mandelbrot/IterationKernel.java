@@ -0,0 +1,172 @@
+package ch.zhaw.prog2.mandelbrot;
+
+/**
+ * Implementations of the escape time loop, computing the iteration counts of one row of pixels.
+ * All kernels execute exactly the same floating point operations per pixel, so they
+ * produce bit-identical results. The default kernel can be selected with the system
+ * property {@code mandelbrot.kernel} (scalar or lanes).
+ * <p>
+ * The kernels can skip points inside the set with the cardioid and periodicity shortcuts
+ * (see {@link Shortcuts}), which does not change the counts. The number of iterations
+ * returned is the number actually computed, the difference to the sum of the counts is saved.
+ */
+public enum IterationKernel {
+    /** one pixel after the other */
+    SCALAR {
+        long computeRow(double xmin, double dx, double ci, int x, int width, int step, int maxIterations,
+                        Shortcuts shortcuts, int[] iterations, int offset) {
+            long spent = 0;
+            for (int col = 0; col < width; col += step) {
+                double cr = xmin + dx * (x + col);
+                if (shortcuts.cardioid && Shortcuts.insideCardioidOrBulb(cr, ci)) {
+                    iterations[offset + col] = maxIterations;
+                    continue;
+                }
+                int count = 0;
+                int result = -1;
+                double zr = cr;
+                double zi = ci;
+                double savedZr = zr;
+                double savedZi = zi;
+                int checkpoint = 1;
+                while (count < maxIterations && (zr * zr + zi * zi) < 4) {
+                    count++;
+                    double newzr = zr * zr - zi * zi + cr;
+                    zi = 2 * zr * zi + ci;
+                    zr = newzr;
+                    if (shortcuts.periodicity) {
+                        if (zr == savedZr && zi == savedZi) {
+                            result = maxIterations; // the orbit is a cycle, it never escapes
+                            break;
+                        }
+                        if (count == checkpoint) {
+                            savedZr = zr;
+                            savedZi = zi;
+                            checkpoint <<= 1;
+                        }
+                    }
+                }
+                iterations[offset + col] = result < 0 ? count : result;
+                spent += count;
+            }
+            return spent;
+        }
+    },
+    /**
+     * Four pixels in lockstep. The four independent chains of multiplications
+     * keep the floating point units of the processor busy, while a single pixel has to wait
+     * for the result of each operation before starting the next one. The loop ends as soon
+     * as all four pixels are done; the count of a pixel is taken when it escapes.
+     */
+    LANES {
+        long computeRow(double xmin, double dx, double ci, int x, int width, int step, int maxIterations,
+                        Shortcuts shortcuts, int[] iterations, int offset) {
+            final boolean periodicity = shortcuts.periodicity;
+            long spent = 0;
+            int col = 0;
+            for (; col + (LANE_COUNT - 1) * step < width; col += LANE_COUNT * step) {
+                int col1 = col + step;
+                int col2 = col + 2 * step;
+                int col3 = col + 3 * step;
+                double cr0 = xmin + dx * (x + col);
+                double cr1 = xmin + dx * (x + col1);
+                double cr2 = xmin + dx * (x + col2);
+                double cr3 = xmin + dx * (x + col3);
+                double zr0 = cr0, zr1 = cr1, zr2 = cr2, zr3 = cr3;
+                double zi0 = ci, zi1 = ci, zi2 = ci, zi3 = ci;
+                double savedZr0 = zr0, savedZr1 = zr1, savedZr2 = zr2, savedZr3 = zr3;
+                double savedZi0 = ci, savedZi1 = ci, savedZi2 = ci, savedZi3 = ci;
+                int count0 = -1, count1 = -1, count2 = -1, count3 = -1; // -1 while not done
+                int active = LANE_COUNT;
+                if (shortcuts.cardioid) {
+                    if (Shortcuts.insideCardioidOrBulb(cr0, ci)) { count0 = maxIterations; active--; }
+                    if (Shortcuts.insideCardioidOrBulb(cr1, ci)) { count1 = maxIterations; active--; }
+                    if (Shortcuts.insideCardioidOrBulb(cr2, ci)) { count2 = maxIterations; active--; }
+                    if (Shortcuts.insideCardioidOrBulb(cr3, ci)) { count3 = maxIterations; active--; }
+                }
+                int checkpoint = 1;
+                int count = 0;
+                while (count < maxIterations && active > 0) {
+                    // lanes which are done keep computing, but their results are ignored
+                    if (count0 < 0 && !(zr0 * zr0 + zi0 * zi0 < 4)) { count0 = count; spent += count; active--; }
+                    if (count1 < 0 && !(zr1 * zr1 + zi1 * zi1 < 4)) { count1 = count; spent += count; active--; }
+                    if (count2 < 0 && !(zr2 * zr2 + zi2 * zi2 < 4)) { count2 = count; spent += count; active--; }
+                    if (count3 < 0 && !(zr3 * zr3 + zi3 * zi3 < 4)) { count3 = count; spent += count; active--; }
+                    if (active == 0)
+                        break;
+                    count++;
+                    double newzr0 = zr0 * zr0 - zi0 * zi0 + cr0;
+                    double newzr1 = zr1 * zr1 - zi1 * zi1 + cr1;
+                    double newzr2 = zr2 * zr2 - zi2 * zi2 + cr2;
+                    double newzr3 = zr3 * zr3 - zi3 * zi3 + cr3;
+                    zi0 = 2 * zr0 * zi0 + ci;
+                    zi1 = 2 * zr1 * zi1 + ci;
+                    zi2 = 2 * zr2 * zi2 + ci;
+                    zi3 = 2 * zr3 * zi3 + ci;
+                    zr0 = newzr0;
+                    zr1 = newzr1;
+                    zr2 = newzr2;
+                    zr3 = newzr3;
+                    if (periodicity) {
+                        // a lane whose orbit repeats is a cycle, it never escapes
+                        if (count0 < 0 && zr0 == savedZr0 && zi0 == savedZi0) { count0 = maxIterations; spent += count; active--; }
+                        if (count1 < 0 && zr1 == savedZr1 && zi1 == savedZi1) { count1 = maxIterations; spent += count; active--; }
+                        if (count2 < 0 && zr2 == savedZr2 && zi2 == savedZi2) { count2 = maxIterations; spent += count; active--; }
+                        if (count3 < 0 && zr3 == savedZr3 && zi3 == savedZi3) { count3 = maxIterations; spent += count; active--; }
+                        if (count == checkpoint) {
+                            savedZr0 = zr0; savedZr1 = zr1; savedZr2 = zr2; savedZr3 = zr3;
+                            savedZi0 = zi0; savedZi1 = zi1; savedZi2 = zi2; savedZi3 = zi3;
+                            checkpoint <<= 1;
+                        }
+                    }
+                }
+                // lanes which are not done reached the maximum
+                spent += (long) active * maxIterations;
+                iterations[offset + col] = count0 < 0 ? maxIterations : count0;
+                iterations[offset + col1] = count1 < 0 ? maxIterations : count1;
+                iterations[offset + col2] = count2 < 0 ? maxIterations : count2;
+                iterations[offset + col3] = count3 < 0 ? maxIterations : count3;
+            }
+            // remaining pixels of the row
+            if (col >= width)
+                return spent;
+            return spent + SCALAR.computeRow(xmin, dx, ci, x + col, width - col, step, maxIterations,
+                shortcuts, iterations, offset + col);
+        }
+    };
+
+    static final int LANE_COUNT = 4;
+
+    /** kernel selected by the system property mandelbrot.kernel, LANES by default or if the name is unknown */
+    public static final IterationKernel DEFAULT = fromProperty("mandelbrot.kernel", LANES);
+
+    public static IterationKernel fromName(String name) {
+        return valueOf(name.toUpperCase());
+    }
+
+    /* an unknown name must not fail the initialization of the class, so it only prints a message */
+    private static IterationKernel fromProperty(String property, IterationKernel fallback) {
+        String name = System.getProperty(property);
+        if (name == null)
+            return fallback;
+        try {
+            return fromName(name);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown kernel " + name + " in " + property + ", using "
+                + fallback.name().toLowerCase());
+            return fallback;
+        }
+    }
+
+    /**
+     * Computes the pixels x, x+step, x+2*step ... (less than x+width) of the row with imaginary part ci.
+     *
+     * @param xmin       real part of column 0
+     * @param dx         distance between two columns
+     * @param shortcuts  only the cardioid and periodicity shortcuts are used by the kernels
+     * @param iterations receives the counts, the count of column x + i is at index offset + i
+     * @return the number of iterations computed
+     */
+    abstract long computeRow(double xmin, double dx, double ci, int x, int width, int step, int maxIterations,
+                             Shortcuts shortcuts, int[] iterations, int offset);
+}
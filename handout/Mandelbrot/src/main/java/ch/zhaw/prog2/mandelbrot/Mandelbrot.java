@@ -1,29 +1,48 @@
 package ch.zhaw.prog2.mandelbrot;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
-import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
-import javafx.scene.paint.Color;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
 
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
 /**
  * This  application uses several threads to compute an image "in the background".
  *
- * As rows of pixels in the image are computed, they are copied to the screen.
+ * As tiles of pixels in the image are computed, they are copied to the screen.
+ * The computed tiles are collected in a queue and copied into the image
+ * once per frame, so the GUI thread is not flooded with drawing requests.
  * (The image is a small piece of the famous Mandelbrot set, which
  * is used just because it takes some time to compute.  There is no need
  * to understand what the image means.)  The user starts the computation by
  * clicking a "Start" button.  A pop-up menu allows the user to select the
- * number of threads to be used.  The specified number of threads is created
- * and each thread is assigned a region in the image.  The threads are run
+ * number of threads to be used.  A ForkJoinPool with the specified number of
+ * threads computes the image in tiles, splitting expensive tiles further, so
+ * that all threads stay busy.  The computation is done by the {@link MandelbrotEngine},
+ * which does not depend on JavaFX; this class only displays the result.
+ * The image can be moved by dragging it with the mouse and zoomed with the mouse wheel.
+ * The image is composed of tiles, which are cached (see {@link TiledRenderer}), so only the
+ * newly visible parts have to be computed.  Each view is rendered as a job of the
+ * {@link RenderScheduler}, so a new view cancels the old one at once, without creating
+ * new threads, and no tiles of the old view are drawn anymore.  The threads are run
  * at lower priority, which will make sure that the GUI thread will get a
  * chance to run to repaint the display as necessary.
  */
@@ -38,44 +57,66 @@ public class Mandelbrot {
 
 
     public static class MandelbrotApplication extends Application {
+        private static final int BACKGROUND = 0xFFD3D3D3; // light gray
+        private static final int MAX_ZOOM = 46;  // the precision of double is exhausted beyond
+        private static final long CACHE_SIZE = 256L << 20;  // bytes
 
-        private volatile boolean running;  // used to signal the thread to abort
-
-        private Button startButton; // button the user can click to start or abort the thread
+        private Button startButton; // button the user can click to start or abort the computation
         private ComboBox<String> threadCountSelect;  // for specifying the number of threads to be used
+        private CheckBox progressiveSelect;  // for rendering a coarse preview first
+
+        private WritableImage image;  // the image which is displayed
+        // tiles computed but not drawn yet, drawn by the GUI thread once per frame
+        private final Queue<ImageTile> computedTiles = new ConcurrentLinkedQueue<>();
 
-        private Canvas canvas;      // the canvas where the image is displayed
-        private GraphicsContext g;  // the graphics context for drawing on the canvas
+        private final Palette palette = Palette.spectrum(256); // the colors of the spectrum
 
-        private Color[] palette;    // the color palette, containing the colors of the spectrum
+        int width, height;          // the size of the image
 
-        int width, height;          // the size of the canvas
+        private MandelbrotEngine engine;  // computes the image
+        private final RenderScheduler scheduler = new RenderScheduler();
+        private RenderScheduler.Job job;  // the computation of the current view, null before the first start
+        // the tiles computed so far, evicted tiles are kept on the disk if the property mandelbrot.spill is set
+        private final TileCache cache = new TileCache(CACHE_SIZE,
+            System.getProperty("mandelbrot.spill") == null ? null : Paths.get(System.getProperty("mandelbrot.spill")));
 
-        private Thread[] workers;   // the threads that compute the image
-        private int tasksRemaining; // How many tasks/threads are still running resp. need to be processed
+        // the view: zoom level and global pixel coordinates of the top left corner (see TiledRenderer)
+        private int zoom;
+        private long originX, originY;
 
-        private long startTime;     // used to calculate the runtime for the calculation
+        private double dragStartX, dragStartY;
+
+        // the depth of the Mandelbrot graphic
+        private final int maxIterations = MandelbrotCli.DEFAULT_ITERATIONS;
 
 
         /**
-         * Set up the GUI and event handling.  The canvas will be 1200-by-1000 pixels,
+         * Set up the GUI and event handling.  The image will be 1200-by-1000 pixels,
          * if that fits comfortably on the screen; otherwise, size will be reduced to fit.
-         * This method also makes the color palette, containing colors in spectral order.
+         * The view starts at the area of the famous image.
          */
         public void start(Stage stage) {
-            palette = new Color[256];
-            for (int i = 0; i < 256; i++) {
-                palette[i] = Color.hsb(360 * (i / 256.0), 1, 1);
-            }
             int screenWidth = (int) Screen.getPrimary().getVisualBounds().getWidth();
             int screenHeight = (int) Screen.getPrimary().getVisualBounds().getHeight();
             width = Math.min(1200, screenWidth - 50);
             height = Math.min(1000, screenHeight - 120);
-
-            canvas = new Canvas(width, height);
-            g = canvas.getGraphicsContext2D();
-            g.setFill(Color.LIGHTGRAY);
-            g.fillRect(0, 0, width, height);
+            initView(MandelbrotCli.DEFAULT_AREA);
+
+            image = new WritableImage(width, height);
+            clearImage();
+            // draws the tiles computed since the last frame
+            new AnimationTimer() {
+                public void handle(long now) {
+                    drawComputedTiles();
+                }
+            }.start();
+            ImageView imageView = new ImageView(image);
+            imageView.setOnMousePressed(e -> {
+                dragStartX = e.getX();
+                dragStartY = e.getY();
+            });
+            imageView.setOnMouseReleased(e -> move(Math.round(dragStartX - e.getX()), Math.round(dragStartY - e.getY())));
+            imageView.setOnScroll(e -> zoom(e.getDeltaY() > 0, (int) e.getX(), (int) e.getY()));
             startButton = new Button("Start!");
             startButton.setOnAction(e -> startOrStopCalculation());
             int maxThreads = 2 * Runtime.getRuntime().availableProcessors();
@@ -85,10 +126,12 @@ public class Mandelbrot {
                 threadCountSelect.getItems().add("Use " + i + " threads.");
             }
             threadCountSelect.getSelectionModel().select(0);
-            HBox bottom = new HBox(8, startButton, threadCountSelect);
+            progressiveSelect = new CheckBox("Progressive");
+            progressiveSelect.setSelected(true);
+            HBox bottom = new HBox(8, startButton, threadCountSelect, progressiveSelect);
             bottom.setStyle("-fx-padding: 6px; -fx-border-color:black; -fx-border-width: 2px 0 0 0");
             bottom.setAlignment(Pos.CENTER);
-            BorderPane root = new BorderPane(canvas);
+            BorderPane root = new BorderPane(imageView);
             root.setBottom(bottom);
             root.setStyle("-fx-border-color:black; -fx-border-width: 2px");
             Scene scene = new Scene(root);
@@ -98,196 +141,181 @@ public class Mandelbrot {
             stage.show();
         }
 
+        @Override
+        public void stop() {
+            scheduler.cancel();
+            if (engine != null)
+                engine.close();
+        }
 
+        /* selects the zoom level and position closest to the given area (xmin, xmax, ymin, ymax) */
+        private void initView(double[] area) {
+            double pixelSize = (area[1] - area[0]) / (width - 1);
+            zoom = (int) Math.max(0, Math.min(MAX_ZOOM, Math.round(Math.log(TiledRenderer.scale(0) / pixelSize) / Math.log(2))));
+            originX = TiledRenderer.pixelX((area[0] + area[1]) / 2, zoom) - width / 2;
+            originY = TiledRenderer.pixelY((area[2] + area[3]) / 2, zoom) - height / 2;
+        }
 
         /**
          * This method is called when the user clicks the start button.
-         * If no computation is currently running, it starts as many new
-         * threads as the user has specified, and assigns a different part
-         * of the image to each thread.  The threads are run at lower
+         * If no computation is currently running, it starts the computation of the current view
+         * with as many threads as the user has specified.  The threads are run at lower
          * priority than the event-handling thread, in order to keep the
          * GUI responsive.  If a computation is in progress when this
-         * method is called, running is set to false as a signal to stop
-         * all of the threads.
+         * method is called, it is signalled to stop.
          */
         private void startOrStopCalculation() {
-            if (running) {
-                startButton.setDisable(true); // will be re-enabled when all threads have stopped
+            if (job != null && !job.result.isDone()) {
+                startButton.setDisable(true); // will be re-enabled when the job has stopped
                 // (prevent user from trying to stop threads that are already stopping)
-                stopTasks();
+                job.cancel();
             } else {
-                startButton.setText("Abort"); // change name while computation is in progress
-                threadCountSelect.setDisable(true); // will be re-enabled when all threads finish
-                g.setFill(Color.LIGHTGRAY);  // fill canvas with gray
-                g.fillRect(0, 0, width, height);
-                int threadCount = threadCountSelect.getSelectionModel().getSelectedIndex() + 1;
-                startTasks(threadCount);
+                startTasks();
             }
         }
 
-        /**
-         * This method is called by each task/thread when it terminates.  We keep track
-         * of the number of tasks/threads that have terminated, so that when they have
-         * all finished, we can put the program into the correct state, such as
-         * changing the name of the button to "Start Again" and re-enabling the
-         * pop-up menu.
-         */
-        private synchronized void taskFinished() {
-            tasksRemaining--;
-            if (tasksRemaining == 0) { // all threads have finished
-                Platform.runLater(() -> {
-                    // Make sure state is correct when threads end.
-                    startButton.setText("Start Again");
-                    startButton.setDisable(false);
-                    threadCountSelect.setDisable(false);
-                });
-                stopTasks();
+        /* moves the view by the given number of pixels */
+        private void move(long dx, long dy) {
+            if (dx == 0 && dy == 0)
+                return;
+            originX += dx;
+            originY += dy;
+            startTasks();
+        }
+
+        /* zooms in or out by a factor of 2, the point under the mouse stays in place */
+        private void zoom(boolean in, int mouseX, int mouseY) {
+            if (in && zoom < MAX_ZOOM) {
+                zoom++;
+                originX = 2 * (originX + mouseX) - mouseX;
+                originY = 2 * (originY + mouseY) - mouseY;
+            } else if (!in && zoom > 0) {
+                zoom--;
+                originX = Math.floorDiv(originX + mouseX, 2) - mouseX;
+                originY = Math.floorDiv(originY + mouseY, 2) - mouseY;
+            } else {
+                return;
             }
+            startTasks();
         }
 
         /**
-         * This method is called from the computation threads when one row of pixels needs
-         * to be added to the image.
-         *
-         * @param row  the row of pixels whose colors are to be set
+         * This method is called in the GUI thread when a computation has terminated for any reason.
+         * If it is the current computation, we put the program into the correct state, such as
+         * changing the name of the button to "Start Again" and re-enabling the pop-up menu.
          */
-        private void drawOneRow(ImageRow row) {
-            for (int x = 0; x < row.pixels.length; x++) {
-                // Color an individual pixel by filling in a 1-by-1 pixel rectangle.
-                g.setFill(row.pixels[x]);
-                g.fillRect(x, row.rowNumber, 1, 1);
-            }
+        private void taskFinished(RenderScheduler.Job finished, RenderResult result, Throwable error) {
+            if (finished != job)
+                return; // a newer computation is running
+            startButton.setText("Start Again");
+            startButton.setDisable(false);
+            threadCountSelect.setDisable(false);
+            progressiveSelect.setDisable(false);
+            if (error != null)
+                System.out.println("Error: " + error.getMessage());
+            else
+                System.out.println("Finished calculation: " + result + ", cache: " + cache);
+        }
+
+        private void clearImage() {
+            int[] gray = new int[width * height];
+            Arrays.fill(gray, BACKGROUND);
+            image.getPixelWriter().setPixels(0, 0, width, height,
+                PixelFormat.getIntArgbInstance(), gray, 0, width);
         }
 
         /**
-         * This method starts as many new threads as the user has specified,
-         * and assigns a different part of the image to each thread.
-         * The threads are run at lower priority than the event-handling thread,
-         * in order to keep the GUI responsive.
-         *
-         * @param threadCount number of thread to start to run the tasks
+         * This method is called in the UI thread once per frame. It copies all tiles
+         * computed since the last frame into the image, each tile as a whole.
+         * Tiles of a previous view are dropped.
          */
-        private void startTasks(int threadCount) {
-            System.out.println("Starting calculation using " + threadCount + " threads.");
-            workers = new Thread[threadCount];
-            int rowsPerThread;  // How many rows of pixels should each thread compute?
-            rowsPerThread = height / threadCount;
-            running = true;  // Set the signal before starting the threads!
-            tasksRemaining = threadCount;  // Records how many of the threads are still running
-            startTime = System.currentTimeMillis();
-            for (int i = 0; i < threadCount; i++) {
-                // first row computed by thread number i
-                int startRow = rowsPerThread * i;
-
-                // last row computed by thread number i
-                // (we have to make sure that the endRow for the last thread is the bottom row of the image)
-                int endRow =(i == threadCount-1)? height-1 : rowsPerThread*(i+1)-1;
-
-                // Create and start a thread to compute the rows of the image from startRow to endRow.
-                workers[i] = new Thread(new MandelbrotTask(startRow, endRow));
+        private void drawComputedTiles() {
+            PixelWriter pixelWriter = image.getPixelWriter();
+            ImageTile tile;
+            while ((tile = computedTiles.poll()) != null) {
+                if (scheduler.isCurrent(tile.job))
+                    pixelWriter.setPixels(tile.x, tile.y, tile.width, tile.height,
+                        PixelFormat.getIntArgbInstance(), tile.pixels, 0, tile.width);
+            }
+        }
+
+        /* creates the engine, if there is none with the selected number of threads yet */
+        private void prepareEngine() {
+            int threadCount = threadCountSelect.getSelectionModel().getSelectedIndex() + 1;
+            if (engine != null && engine.parallelism() == threadCount)
+                return;
+            if (engine != null)
+                engine.close();
+            engine = new MandelbrotEngine(threadCount, pool -> {
+                ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
                 try {
-                    workers[i].setPriority(Thread.currentThread().getPriority() - 1);
+                    worker.setPriority(Thread.currentThread().getPriority() - 1);
                 } catch (Exception e) {
                     System.out.println("Error: " + e.getMessage());
                 }
-                workers[i].start();
-            }
+                return worker;
+            });
+            engine.setShortcuts(Shortcuts.DEFAULT); // exact unless rectangles are selected explicitly
         }
 
-        private void stopTasks() {
-            running = false;  // signal the threads to stop
-            workers = null;
-            long duration = System.currentTimeMillis()-startTime;
-            System.out.println("Finished calculation after " + duration + "ms");
+        /**
+         * This method starts the computation of the current view, after stopping a computation
+         * which may still be in progress.  Cached tiles are shown at once, the others are computed
+         * by the engine.  In progressive mode, a coarse preview is shown first and then refined.
+         */
+        private void startTasks() {
+            scheduler.cancel();  // stop the computation of the previous view
+            startButton.setText("Abort"); // change name while computation is in progress
+            startButton.setDisable(false);
+            threadCountSelect.setDisable(true); // will be re-enabled when all threads finish
+            progressiveSelect.setDisable(true);
+            computedTiles.clear();
+            clearImage();  // fill image with gray
+            prepareEngine();
+            System.out.println("Starting calculation of zoom level " + zoom + " using "
+                + engine.parallelism() + " threads.");
+            TiledRenderer renderer = new TiledRenderer(engine, cache);
+            int viewZoom = zoom;
+            long viewX = originX;
+            long viewY = originY;
+            boolean progressive = progressiveSelect.isSelected();
+            RenderScheduler.Job started = scheduler.submit(engine, this::tileComputed,
+                (consumer, token) -> renderer.render(viewZoom, viewX, viewY, width, height, maxIterations,
+                    progressive, consumer, token));
+            job = started;
+            // Make sure this is called when the computation finishes for any reason.
+            started.result.whenComplete((result, error) -> Platform.runLater(() -> taskFinished(started, result, error)));
         }
 
         /**
-         * This is a container class which holds the data for one row to be drawn on the canvas.
-         * No getter and setters. Just use direct access to the fields.
+         * This method is called from the computation threads for each computed tile.
+         * It selects the colors based on the count of iterations and
+         * queues the tile to be drawn in the next frame.
          */
-        private static class ImageRow {
-             final int rowNumber;
-             final Color[] pixels;
-
-            private ImageRow(int rowNumber, int width) {
-                this.rowNumber = rowNumber;
-                this.pixels = new Color[width];
-            }
+        private void tileComputed(long tileJob, int x, int y, int tileWidth, int tileHeight, int[] iterations) {
+            final ImageTile tile = new ImageTile(tileJob, x, y, tileWidth, tileHeight);
+            palette.toArgb(iterations, tile.pixels, tile.pixels.length, maxIterations);
+            computedTiles.add(tile);
         }
 
-
         /**
-         * This class defines the thread that does the computation.
-         * The run method computes the image one pixel at a time.
-         * After computing the colors for each row of pixels, the colors are
-         * copied into the image, and the part of the display that shows that
-         * row is repainted.
-         * All modifications to the GUI are made using Platform.runLater().
-         * (Since the thread runs in the background, at lower priority than
-         * the event-handling thread, the event-handling thread wakes up
-         * immediately to repaint the display.)
+         * This is a container class which holds the data for one tile to be drawn into the image.
+         * No getter and setters. Just use direct access to the fields.
          */
-        private class MandelbrotTask implements Runnable {
-            // these values define the area and depth of the Mandelbrot graphic
-            // we keep them local to allow to extend the function to
-            // select the area and depth dynamically.
-            private final double xmin, xmax, ymin, ymax, dx, dy;
-            private final int maxIterations;
-            // this tasks calculates the following range of rows
-            private final int startRow, endRow;
-
-            MandelbrotTask(int startRow, int endRow) {
-                this.startRow = startRow;
-                this.endRow = endRow;
-                xmin = -1.6744096740931858;
-                xmax = -1.674409674093473;
-                ymin = 4.716540768697223E-5;
-                ymax = 4.716540790246652E-5;
-                dx = (xmax - xmin) / (width - 1);
-                dy = (ymax - ymin) / (height - 1);
-                maxIterations = 10000;
-            }
-
-            public void run() {
-                try {
-                    for (int row = startRow; row <= endRow; row++) {
-                        // Compute one row of pixels.
-                        calculateRow(row);
-                        // Check for the signal to immediately abort the computation.
-                        if (!running) return;
-                    }
-                } finally {
-                    // Make sure this is called when the thread finishes for any reason.
-                    taskFinished();
-                }
+        private static class ImageTile {
+            final long job;
+            final int x, y, width, height;
+            final int[] pixels;  // ARGB colors
+
+            private ImageTile(long job, int x, int y, int width, int height) {
+                this.job = job;
+                this.x = x;
+                this.y = y;
+                this.width = width;
+                this.height = height;
+                this.pixels = new int[width * height];
             }
-
-            private void calculateRow(int row) {
-                final ImageRow imageRow = new ImageRow(row, width);
-                double x;
-                double y = ymax - dy * row;
-
-                for (int col = 0; col < width; col++) {
-                    x = xmin + dx * col;
-                    int count = 0;
-                    double xx = x;
-                    double yy = y;
-                    while (count < maxIterations && (xx * xx + yy * yy) < 4) {
-                        count++;
-                        double newxx = xx * xx - yy * yy + x;
-                        yy = 2 * xx * yy + y;
-                        xx = newxx;
-                    }
-                    // select color based on count of iterations
-                    imageRow.pixels[col] = (count != maxIterations)?
-                        palette[count % palette.length] : Color.BLACK;
-                    // Check for the signal to immediately abort the computation.
-                    if (!running) return;
-                }
-                // Schedule to draw the image row in the UI thread (runLater)
-                Platform.runLater(() -> drawOneRow(imageRow));
-            }
-        } // end MandelbrotTask
+        }
 
     } // end MandelbrotApplication
 
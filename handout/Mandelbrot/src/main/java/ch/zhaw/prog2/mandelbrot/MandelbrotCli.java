@@ -0,0 +1,296 @@
+package ch.zhaw.prog2.mandelbrot;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Renders a Mandelbrot image into a PNG or PPM file, without user interface.
+ * <pre>
+ * Usage: MandelbrotCli [options]
+ *   --size WxH                    image size in pixels (default 1200x1000)
+ *   --area xmin,xmax,ymin,ymax    area of the complex plane (default as in the UI)
+ *   --center re,im                deep zoom: center with any number of digits, rendered by perturbation
+ *   --pixel-size S                deep zoom: distance between two pixels, e.g. 1e-50 (default 1e-12)
+ *   --iterations N                maximum number of iterations (default 10000)
+ *   --threads N                   number of threads (default: number of processors)
+ *   --kernel scalar|lanes         iteration kernel (default lanes)
+ *   --shortcuts LIST              comma separated: cardioid, periodicity, rectangles, exact, all, none (default none)
+ *                                 (exact = cardioid,periodicity; rectangles is approximate, check with --verify)
+ *   --progressive                 render in passes of increasing resolution and show their times
+ *   --verify                      also render with the scalar kernel without shortcuts and compare the results
+ *                                 (deep zoom: only counts the differing pixels, as rounding differs)
+ *   --stats FILE                  write the work of each thread to a .csv or .json file
+ *   --scaling                     render with 1 to 2 x processors threads and print times and load balance as CSV
+ *   --zoom FRAMES                 render a zoom into the center of the area as frames into the directory given by --out
+ *   --frames-per-octave N         zoom: frames until the pixel size is halved (default 30)
+ *   --encoders N                  zoom: threads writing the frames (default 2)
+ *   --format png|ppm              zoom: format of the frames (default png)
+ *   --out FILE                    .png or .ppm file (default mandelbrot.png)
+ * </pre>
+ */
+public class MandelbrotCli {
+    // the area shown by the UI
+    static final double[] DEFAULT_AREA =
+        {-1.6744096740931858, -1.674409674093473, 4.716540768697223E-5, 4.716540790246652E-5};
+    static final int DEFAULT_ITERATIONS = 10000;
+
+    public static void main(String[] args) throws IOException {
+        int width = 1200;
+        int height = 1000;
+        double[] area = DEFAULT_AREA;
+        int maxIterations = DEFAULT_ITERATIONS;
+        int threads = Runtime.getRuntime().availableProcessors();
+        IterationKernel kernel = IterationKernel.DEFAULT;
+        boolean verify = false;
+        boolean progressive = false;
+        boolean scaling = false;
+        Path statsFile = null;
+        int zoomFrames = 0;
+        int framesPerOctave = 30;
+        int encoders = 2;
+        String format = "png";
+        Shortcuts shortcuts = Shortcuts.NONE;
+        Path out = Paths.get("mandelbrot.png");
+        BigDecimal[] center = null;
+        double pixelSize = 1e-12;
+        Viewport viewport = null;
+        DeepViewport deep = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (option.equals("--verify")) {
+                    verify = true;
+                    continue;
+                }
+                if (option.equals("--progressive")) {
+                    progressive = true;
+                    continue;
+                }
+                if (option.equals("--scaling")) {
+                    scaling = true;
+                    continue;
+                }
+                if (i + 1 >= args.length)
+                    throw new IllegalArgumentException("missing value of " + option);
+                String value = args[++i];
+                switch (option) {
+                    case "--size":
+                        String[] size = value.split("x");
+                        if (size.length != 2)
+                            throw new IllegalArgumentException("size must be given as WxH");
+                        width = Integer.parseInt(size[0]);
+                        height = Integer.parseInt(size[1]);
+                        break;
+                    case "--area":
+                        String[] bounds = value.split(",");
+                        if (bounds.length != 4)
+                            throw new IllegalArgumentException("area needs 4 values");
+                        area = new double[4];
+                        for (int b = 0; b < 4; b++)
+                            area[b] = Double.parseDouble(bounds[b]);
+                        break;
+                    case "--center":
+                        String[] parts = value.split(",");
+                        if (parts.length != 2)
+                            throw new IllegalArgumentException("center must be given as re,im");
+                        center = new BigDecimal[] {new BigDecimal(parts[0].trim()), new BigDecimal(parts[1].trim())};
+                        break;
+                    case "--pixel-size":
+                        pixelSize = Double.parseDouble(value);
+                        break;
+                    case "--iterations":
+                        maxIterations = Integer.parseInt(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--kernel":
+                        kernel = IterationKernel.fromName(value);
+                        break;
+                    case "--shortcuts":
+                        shortcuts = Shortcuts.parse(value);
+                        break;
+                    case "--zoom":
+                        zoomFrames = Integer.parseInt(value);
+                        break;
+                    case "--frames-per-octave":
+                        framesPerOctave = Integer.parseInt(value);
+                        break;
+                    case "--encoders":
+                        encoders = Integer.parseInt(value);
+                        break;
+                    case "--format":
+                        format = value;
+                        break;
+                    case "--stats":
+                        statsFile = Paths.get(value);
+                        break;
+                    case "--out":
+                        out = Paths.get(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option " + option);
+                }
+            }
+            // invalid sizes and bounds are reported like the other argument errors
+            if (center != null)
+                deep = new DeepViewport(center[0], center[1], pixelSize, width, height);
+            else
+                viewport = new Viewport(area[0], area[1], area[2], area[3], width, height);
+        } catch (RuntimeException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println("Usage: MandelbrotCli [--size WxH] [--area xmin,xmax,ymin,ymax] [--center re,im --pixel-size S]"
+                + " [--iterations N] [--threads N] [--kernel scalar|lanes] [--shortcuts LIST] [--progressive] [--verify] [--stats FILE.csv|FILE.json] [--scaling]"
+                + " [--zoom FRAMES [--frames-per-octave N] [--encoders N] [--format png|ppm]] [--out FILE.png|FILE.ppm|DIR]");
+            System.exit(1);
+            return;
+        }
+
+        if (deep != null) {
+            renderDeep(deep, maxIterations, threads, verify, out);
+            return;
+        }
+
+        if (zoomFrames > 0) {
+            renderZoom(viewport, maxIterations, threads, kernel, shortcuts, zoomFrames, framesPerOctave,
+                encoders, format, out);
+            return;
+        }
+        if (scaling) {
+            measureScaling(viewport, maxIterations, kernel, shortcuts, progressive);
+            return;
+        }
+        System.out.println("Rendering " + viewport + " with " + threads + " threads, " + kernel + " kernel, shortcuts: " + shortcuts);
+        try (MandelbrotEngine engine = new MandelbrotEngine(threads)) {
+            engine.setKernel(kernel);
+            engine.setShortcuts(shortcuts);
+            RenderStats stats = new RenderStats();
+            engine.setStats(stats);
+            long startTime = System.currentTimeMillis();
+            int[] iterations;
+            if (progressive) {
+                final long passStart = startTime;
+                iterations = engine.renderProgressive(viewport, maxIterations, (x, y, w, h, counts) -> { },
+                    () -> false, step -> System.out.println("Pass with step " + step + " finished after "
+                        + (System.currentTimeMillis() - passStart) + "ms"));
+            } else {
+                iterations = engine.render(viewport, maxIterations);
+            }
+            System.out.println("Finished calculation after " + (System.currentTimeMillis() - startTime) + "ms");
+            long computed = engine.computedIterations();
+            long saved = engine.savedIterations();
+            System.out.printf("Iterations computed: %d, saved by shortcuts: %d (%.1f%%)%n",
+                computed, saved, computed + saved > 0 ? 100.0 * saved / (computed + saved) : 0.0);
+            engine.setStats(null);
+            System.out.printf("Busy time of all threads: %dms, load imbalance (busiest / mean): %.2f%n",
+                stats.busyNanos() / 1_000_000, stats.imbalance(threads));
+            if (statsFile != null) {
+                stats.write(statsFile);
+                System.out.println("Statistics written to " + statsFile);
+            }
+            if (verify) {
+                engine.setKernel(IterationKernel.SCALAR);
+                engine.setShortcuts(Shortcuts.NONE);
+                startTime = System.currentTimeMillis();
+                int[] expected = engine.render(viewport, maxIterations);
+                System.out.println("Scalar calculation after " + (System.currentTimeMillis() - startTime) + "ms");
+                int mismatches = 0;
+                for (int i = 0; i < expected.length; i++) {
+                    if (iterations[i] != expected[i])
+                        mismatches++;
+                }
+                System.out.println(mismatches == 0 ? "Verified: identical to the scalar kernel without shortcuts"
+                    : "Verification FAILED: " + mismatches + " pixels differ");
+                if (mismatches != 0)
+                    System.exit(2);
+            }
+            int[] argb = Palette.spectrum(256).toArgb(iterations, maxIterations);
+            ImageFiles.write(out, width, height, argb);
+            System.out.println("Written to " + out);
+        }
+    }
+
+    /* renders a zoom into the center of the viewport, starting with its pixel size */
+    private static void renderZoom(Viewport viewport, int maxIterations, int threads, IterationKernel kernel,
+                                   Shortcuts shortcuts, int frames, int framesPerOctave, int encoders,
+                                   String format, Path directory) throws IOException {
+        double centerRe = (viewport.xmin + viewport.xmax) / 2;
+        double centerIm = (viewport.ymin + viewport.ymax) / 2;
+        System.out.println("Rendering " + frames + " frames zooming into " + centerRe + " " + centerIm + " i with "
+            + threads + " threads and " + encoders + " encoders into " + directory);
+        try (MandelbrotEngine engine = new MandelbrotEngine(threads)) {
+            engine.setKernel(kernel);
+            engine.setShortcuts(shortcuts);
+            ZoomSequenceRenderer renderer = new ZoomSequenceRenderer(engine, viewport.width, viewport.height, maxIterations);
+            ZoomSequenceRenderer.Report report = renderer.render(centerRe, centerIm, Math.abs(viewport.dx()), frames,
+                framesPerOctave, directory, format, encoders);
+            System.out.println(report);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* renders the viewport with 1 to 2 x processors threads and prints the times as CSV */
+    private static void measureScaling(Viewport viewport, int maxIterations, IterationKernel kernel,
+                                       Shortcuts shortcuts, boolean progressive) {
+        int maxThreads = 2 * Runtime.getRuntime().availableProcessors();
+        System.out.println("Rendering " + viewport + " with " + kernel + " kernel, shortcuts: " + shortcuts);
+        System.out.println("threads,millis,speedup,busy_ms,imbalance,tiles");
+        long singleMillis = 0;
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            try (MandelbrotEngine engine = new MandelbrotEngine(threads)) {
+                engine.setKernel(kernel);
+                engine.setShortcuts(shortcuts);
+                RenderStats stats = new RenderStats();
+                engine.setStats(stats);
+                long startTime = System.nanoTime();
+                if (progressive)
+                    engine.renderProgressive(viewport, maxIterations, (x, y, w, h, counts) -> { }, () -> false, null);
+                else
+                    engine.render(viewport, maxIterations);
+                long millis = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+                if (threads == 1)
+                    singleMillis = millis;
+                long tiles = stats.workers().stream().mapToLong(RenderStats.Worker::tiles).sum();
+                System.out.printf("%d,%d,%.2f,%d,%.2f,%d%n", threads, millis, (double) singleMillis / millis,
+                    stats.busyNanos() / 1_000_000, stats.imbalance(threads), tiles);
+            }
+        }
+    }
+
+    private static void renderDeep(DeepViewport viewport, int maxIterations, int threads, boolean verify, Path out)
+            throws IOException {
+        System.out.println("Rendering " + viewport + " with " + threads + " threads, perturbation with "
+            + viewport.precision() + " digits");
+        try (MandelbrotEngine engine = new MandelbrotEngine(threads)) {
+            long startTime = System.currentTimeMillis();
+            PerturbationRenderer.Result result = new PerturbationRenderer(engine).render(viewport, maxIterations, () -> false);
+            System.out.println("Finished calculation after " + (System.currentTimeMillis() - startTime) + "ms, "
+                + result.references + " reference orbits, " + result.unresolvedGlitches + " unresolved glitches");
+            if (verify) {
+                double cr = viewport.centerRe.doubleValue();
+                double ci = viewport.centerIm.doubleValue();
+                Viewport plain = new Viewport(cr + viewport.offsetRe(0), cr + viewport.offsetRe(viewport.width - 1),
+                    ci + viewport.offsetIm(viewport.height - 1), ci + viewport.offsetIm(0), viewport.width, viewport.height);
+                engine.setKernel(IterationKernel.SCALAR);
+                engine.setShortcuts(Shortcuts.NONE);
+                int[] expected = engine.render(plain, maxIterations);
+                int mismatches = 0;
+                for (int i = 0; i < expected.length; i++) {
+                    if (result.iterations[i] != expected[i])
+                        mismatches++;
+                }
+                System.out.printf("Compared to double precision: %d pixels (%.2f%%) differ%n",
+                    mismatches, 100.0 * mismatches / expected.length);
+            }
+            int[] argb = Palette.spectrum(256).toArgb(result.iterations, maxIterations);
+            ImageFiles.write(out, viewport.width, viewport.height, argb);
+            System.out.println("Written to " + out);
+        }
+    }
+}
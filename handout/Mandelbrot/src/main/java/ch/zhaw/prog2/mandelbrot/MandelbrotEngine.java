@@ -0,0 +1,245 @@
+package ch.zhaw.prog2.mandelbrot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+/**
+ * Computes the iteration counts of Mandelbrot images, without any user interface.
+ * The work is distributed over the threads of a ForkJoinPool in tiles (see {@link TileTask}).
+ * The counts can be turned into colors by a {@link Palette}.
+ */
+public class MandelbrotEngine implements AutoCloseable {
+    /** steps of the progressive passes, every pass computes only the pixels not computed before */
+    static final int[] PROGRESSIVE_STEPS = {4, 2, 1};
+
+    private final ForkJoinPool pool;
+    private final boolean ownPool;
+    private volatile IterationKernel kernel = IterationKernel.DEFAULT;
+    private volatile Shortcuts shortcuts = Shortcuts.NONE;
+    private final LongAdder computedIterations = new LongAdder();
+    private final LongAdder savedIterations = new LongAdder();
+    private volatile RenderStats stats;
+
+    /**
+     * Engine using one thread per processor.
+     */
+    public MandelbrotEngine() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public MandelbrotEngine(int threads) {
+        this(new ForkJoinPool(threads), true);
+    }
+
+    /**
+     * Engine using the given number of threads created by the factory, e.g. to change their priority.
+     */
+    public MandelbrotEngine(int threads, ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory) {
+        this(new ForkJoinPool(threads, threadFactory, null, false), true);
+    }
+
+    /**
+     * Engine using the given pool, which is not shut down when closing the engine.
+     */
+    public MandelbrotEngine(ForkJoinPool pool) {
+        this(pool, false);
+    }
+
+    private MandelbrotEngine(ForkJoinPool pool, boolean ownPool) {
+        this.pool = pool;
+        this.ownPool = ownPool;
+    }
+
+    ForkJoinPool pool() {
+        return pool;
+    }
+
+    public int parallelism() {
+        return pool.getParallelism();
+    }
+
+    public IterationKernel getKernel() {
+        return kernel;
+    }
+
+    /**
+     * Selects the kernel used for the images rendered from now on.
+     */
+    public void setKernel(IterationKernel kernel) {
+        this.kernel = kernel;
+    }
+
+    public Shortcuts getShortcuts() {
+        return shortcuts;
+    }
+
+    /**
+     * Selects the shortcuts used for the images rendered from now on.
+     */
+    public void setShortcuts(Shortcuts shortcuts) {
+        this.shortcuts = shortcuts;
+    }
+
+    /**
+     * Number of iterations computed by all renderings since the last reset.
+     */
+    public long computedIterations() {
+        return computedIterations.sum();
+    }
+
+    /**
+     * Number of iterations avoided by the shortcuts since the last reset.
+     */
+    public long savedIterations() {
+        return savedIterations.sum();
+    }
+
+    public void resetCounters() {
+        computedIterations.reset();
+        savedIterations.reset();
+    }
+
+    public RenderStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Records the work of each worker thread in the given stats from now on, null to stop recording.
+     */
+    public void setStats(RenderStats stats) {
+        this.stats = stats;
+    }
+
+    private void run(TileTask.Job job) {
+        runAll(List.of(job));
+    }
+
+    /*
+     * Computes the jobs together, so the workers take tiles of all of them at the same time.
+     * Returns when all jobs are done or cancelled.
+     */
+    void runAll(List<TileTask.Job> jobs) {
+        List<TileTask> tasks = new ArrayList<>(jobs.size());
+        for (TileTask.Job job : jobs) {
+            job.stats = stats;
+            tasks.add(new TileTask(job));
+        }
+        try {
+            if (tasks.size() == 1)
+                pool.invoke(tasks.get(0));
+            else
+                pool.invoke(ForkJoinTask.adapt(() -> {
+                    ForkJoinTask.invokeAll(tasks);
+                }));
+        } finally {
+            for (TileTask.Job job : jobs) {
+                computedIterations.add(job.computedIterations.sum());
+                savedIterations.add(job.savedIterations.sum());
+            }
+        }
+    }
+
+    /**
+     * Computes the whole image and waits for the result.
+     *
+     * @return the iteration counts of all pixels, row by row
+     */
+    public int[] render(Viewport viewport, int maxIterations) {
+        int[] image = new int[viewport.width * viewport.height];
+        render(viewport, maxIterations, (x, y, width, height, iterations) -> {
+            for (int row = 0; row < height; row++)
+                System.arraycopy(iterations, row * width, image, (y + row) * viewport.width + x, width);
+        }, () -> false);
+        return image;
+    }
+
+    /**
+     * Computes the image and passes each tile to the consumer as soon as it is computed.
+     * Returns when all tiles are done or the computation was cancelled.
+     *
+     * @param cancelled checked regularly, the computation stops when it returns true
+     */
+    public void render(Viewport viewport, int maxIterations, TileConsumer consumer, BooleanSupplier cancelled) {
+        run(new TileTask.Job(viewport, maxIterations, kernel, shortcuts, consumer, cancelled));
+    }
+
+    /**
+     * Like {@link #render(Viewport, int, TileConsumer, BooleanSupplier)}, but returns immediately.
+     *
+     * @return future completed when all tiles are done or the computation was cancelled
+     */
+    public CompletableFuture<Void> submit(Viewport viewport, int maxIterations,
+                                          TileConsumer consumer, BooleanSupplier cancelled) {
+        return CompletableFuture.runAsync(() -> render(viewport, maxIterations, consumer, cancelled), pool);
+    }
+
+    /**
+     * Computes the image progressively: first only every 4th pixel in both directions (1/16 of the
+     * pixels), then every 2nd and finally all pixels. Each tile of each pass is passed to the consumer,
+     * the pixels not computed yet filled with the value of the pixel computed at the top left.
+     * Every pixel is computed only once, so all passes together take about as long as a single one.
+     * The rectangles shortcut is not used by progressive rendering.
+     * Returns when all passes are done or the computation was cancelled.
+     *
+     * @param passFinished called after each pass with its step (4, 2, 1), may be null
+     * @return the iteration counts of all pixels, row by row
+     */
+    public int[] renderProgressive(Viewport viewport, int maxIterations, TileConsumer consumer,
+                                   BooleanSupplier cancelled, IntConsumer passFinished) {
+        int[] image = new int[viewport.width * viewport.height];
+        IterationKernel passKernel = kernel;
+        Shortcuts passShortcuts = shortcuts;
+        boolean reuse = false;
+        for (int step : PROGRESSIVE_STEPS) {
+            if (cancelled.getAsBoolean())
+                break;
+            run(new TileTask.Job(viewport, maxIterations, passKernel, passShortcuts, consumer,
+                cancelled, step, image, reuse));
+            if (passFinished != null && !cancelled.getAsBoolean())
+                passFinished.accept(step);
+            reuse = true;
+        }
+        return image;
+    }
+
+    /**
+     * Completes an image of which only the pixels in even rows and columns are known,
+     * like the last pass of {@link #renderProgressive}, and waits for the result.
+     *
+     * @param image the iteration counts, row by row, completed in place
+     * @return the given image
+     */
+    public int[] refine(Viewport viewport, int maxIterations, int[] image) {
+        if (image.length != viewport.width * viewport.height)
+            throw new IllegalArgumentException("image does not match the viewport");
+        run(new TileTask.Job(viewport, maxIterations, kernel, shortcuts, (x, y, width, height, iterations) -> { },
+            () -> false, 1, image, true));
+        return image;
+    }
+
+    /**
+     * Like {@link #renderProgressive(Viewport, int, TileConsumer, BooleanSupplier, IntConsumer)},
+     * but returns immediately.
+     *
+     * @return future completed when all passes are done or the computation was cancelled
+     */
+    public CompletableFuture<int[]> submitProgressive(Viewport viewport, int maxIterations, TileConsumer consumer,
+                                                      BooleanSupplier cancelled, IntConsumer passFinished) {
+        return CompletableFuture.supplyAsync(
+            () -> renderProgressive(viewport, maxIterations, consumer, cancelled, passFinished), pool);
+    }
+
+    /**
+     * Shuts down the pool, if it was created by the engine.
+     */
+    public void close() {
+        if (ownPool)
+            pool.shutdown();
+    }
+}
@@ -0,0 +1,66 @@
+package ch.zhaw.prog2.mandelbrot;
+
+/**
+ * Maps iteration counts to ARGB colors. Pixels inside the set (which reached the
+ * maximum number of iterations) are black, the others cycle through the colors.
+ */
+public class Palette {
+    public static final int INSIDE = 0xFF000000;
+
+    private final int[] colors;
+
+    public Palette(int[] colors) {
+        if (colors.length == 0)
+            throw new IllegalArgumentException("palette must not be empty");
+        this.colors = colors.clone();
+    }
+
+    /**
+     * Palette with the given number of fully saturated colors in spectral order.
+     */
+    public static Palette spectrum(int size) {
+        int[] colors = new int[size];
+        for (int i = 0; i < size; i++) {
+            double hue = 6.0 * i / size;
+            int sector = (int) hue;
+            double rising = hue - sector;
+            double falling = 1 - rising;
+            switch (sector) {
+                case 0:  colors[i] = argb(1, rising, 0); break;
+                case 1:  colors[i] = argb(falling, 1, 0); break;
+                case 2:  colors[i] = argb(0, 1, rising); break;
+                case 3:  colors[i] = argb(0, falling, 1); break;
+                case 4:  colors[i] = argb(rising, 0, 1); break;
+                default: colors[i] = argb(1, 0, falling); break;
+            }
+        }
+        return new Palette(colors);
+    }
+
+    private static int argb(double red, double green, double blue) {
+        return 0xFF000000 | (int) Math.round(red * 255) << 16
+            | (int) Math.round(green * 255) << 8 | (int) Math.round(blue * 255);
+    }
+
+    public int size() {
+        return colors.length;
+    }
+
+    public int argb(int iterations, int maxIterations) {
+        return iterations >= maxIterations ? INSIDE : colors[iterations % colors.length];
+    }
+
+    /**
+     * Converts the first length iteration counts to colors.
+     */
+    public void toArgb(int[] iterations, int[] argb, int length, int maxIterations) {
+        for (int i = 0; i < length; i++)
+            argb[i] = argb(iterations[i], maxIterations);
+    }
+
+    public int[] toArgb(int[] iterations, int maxIterations) {
+        int[] argb = new int[iterations.length];
+        toArgb(iterations, argb, iterations.length, maxIterations);
+        return argb;
+    }
+}
@@ -0,0 +1,144 @@
+package ch.zhaw.prog2.mandelbrot;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Renders {@link DeepViewport}s by perturbation: only the orbit of a reference point C is
+ * computed with arbitrary precision. For every pixel c = C + dc, the difference d to the
+ * reference orbit is iterated in double precision:
+ * <pre>
+ *     d(0) = dc,  d(k+1) = 2 Z(k) d(k) + d(k)^2 + dc,  z(k) = Z(k) + d(k)
+ * </pre>
+ * The differences are tiny, so doubles are precise enough, and each pixel costs about as much
+ * as with the plain double kernel.
+ * <p>
+ * Where the pixel orbit gets much closer to zero than the reference orbit, the precision of
+ * d is lost (a glitch, detected by |z| &lt; 1e-3 |Z|, the criterion of Pauldelbrot), and when the
+ * reference escapes before the pixel, the orbit can not be continued. Such pixels are computed
+ * again with a new reference chosen among them, up to {@link #MAX_REFERENCES} times.
+ */
+public class PerturbationRenderer {
+    static final int MAX_REFERENCES = 16;
+    private static final double GLITCH_TOLERANCE = 1e-6; // squared 1e-3
+    private static final int GLITCH = -1;
+
+    private final MandelbrotEngine engine;
+
+    public PerturbationRenderer(MandelbrotEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * The iteration counts and how many references were needed.
+     */
+    public static class Result {
+        public final int[] iterations;
+        public final int references;
+        public final int unresolvedGlitches; // computed with the last reference regardless
+
+        Result(int[] iterations, int references, int unresolvedGlitches) {
+            this.iterations = iterations;
+            this.references = references;
+            this.unresolvedGlitches = unresolvedGlitches;
+        }
+    }
+
+    /**
+     * Computes the image on the threads of the engine and waits for the result.
+     *
+     * @param cancelled checked for every row, the result is incomplete when it returns true
+     */
+    public Result render(DeepViewport viewport, int maxIterations, BooleanSupplier cancelled) {
+        MathContext precision = new MathContext(viewport.precision());
+        int width = viewport.width;
+        int[] iterations = new int[width * viewport.height];
+        // the first reference is the center pixel
+        int referenceIndex = (viewport.height / 2) * width + width / 2;
+        int[] pixels = IntStream.range(0, iterations.length).toArray();
+        int references = 0;
+        while (true) {
+            references++;
+            int refCol = referenceIndex % width;
+            int refRow = referenceIndex / width;
+            ReferenceOrbit orbit = new ReferenceOrbit(
+                viewport.centerRe.add(new BigDecimal(viewport.offsetRe(refCol)), precision),
+                viewport.centerIm.add(new BigDecimal(viewport.offsetIm(refRow)), precision),
+                maxIterations, precision, GLITCH_TOLERANCE);
+            int[] todo = pixels;
+            engine.pool().submit(() -> IntStream.range(0, todo.length).parallel().forEach(i -> {
+                if (!cancelled.getAsBoolean())
+                    iterations[todo[i]] = iterate(viewport, orbit, refCol, refRow, todo[i], maxIterations, true);
+            })).join();
+            if (cancelled.getAsBoolean())
+                return new Result(iterations, references, 0);
+            List<Integer> glitched = new ArrayList<>();
+            for (int pixel : todo) {
+                if (iterations[pixel] == GLITCH)
+                    glitched.add(pixel);
+            }
+            if (glitched.isEmpty())
+                return new Result(iterations, references, 0);
+            if (references == MAX_REFERENCES) {
+                // give up, the counts of the remaining pixels are approximations
+                for (int pixel : glitched)
+                    iterations[pixel] = iterate(viewport, orbit, refCol, refRow, pixel, maxIterations, false);
+                return new Result(iterations, references, glitched.size());
+            }
+            // the next reference is taken from the middle of the glitched pixels
+            pixels = glitched.stream().mapToInt(Integer::intValue).toArray();
+            referenceIndex = pixels[pixels.length / 2];
+        }
+    }
+
+    private static int iterate(DeepViewport viewport, ReferenceOrbit orbit, int refCol, int refRow, int pixel,
+                               int maxIterations, boolean detectGlitches) {
+        // offsets from the reference pixel, exact multiples of the pixel size
+        double dcr = ((pixel % viewport.width) - refCol) * viewport.pixelSize;
+        double dci = (refRow - (pixel / viewport.width)) * viewport.pixelSize;
+        return iterate(orbit, dcr, dci, maxIterations, detectGlitches);
+    }
+
+    /*
+     * Iteration count of the pixel c = C + dc, or GLITCH if it can not be computed with this reference.
+     * With detectGlitches false, the loss of precision is ignored and a pixel outliving the reference
+     * gets the count of the reference.
+     */
+    static int iterate(ReferenceOrbit orbit, double dcr, double dci, int maxIterations, boolean detectGlitches) {
+        double[] zRe = orbit.re;
+        double[] zIm = orbit.im;
+        double[] glitchLimit = orbit.glitchLimit;
+        int end = Math.min(maxIterations, orbit.length - 1);
+        double dr = dcr;
+        double di = dci;
+        for (int k = 0; k < end; k++) {
+            double refRe = zRe[k];
+            double refIm = zIm[k];
+            double zr = refRe + dr;
+            double zi = refIm + di;
+            double magnitude = zr * zr + zi * zi;
+            if (!(magnitude < 4))
+                return k;
+            if (detectGlitches && magnitude < glitchLimit[k])
+                return GLITCH;
+            // d(k+1) = (2 Z(k) + d(k)) d(k) + dc, with z = Z + d this is (Z + z) d + dc
+            double sumRe = refRe + zr;
+            double sumIm = refIm + zi;
+            double newDr = sumRe * dr - sumIm * di + dcr;
+            di = sumRe * di + sumIm * dr + dci;
+            dr = newDr;
+        }
+        if (end == maxIterations)
+            return maxIterations;
+        // the reference has escaped, the pixel needs another one unless it escapes now
+        double zr = zRe[end] + dr;
+        double zi = zIm[end] + di;
+        if (!(zr * zr + zi * zi < 4))
+            return end;
+        return detectGlitches ? GLITCH : end;
+    }
+}
@@ -0,0 +1,42 @@
+package ch.zhaw.prog2.mandelbrot;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * The orbit of one reference point, computed with arbitrary precision (BigDecimal)
+ * and stored as doubles, which is precise enough for the values of the orbit itself.
+ * The orbit starts with Z(0) = C like the iteration of the double kernels and ends
+ * with the first value outside the escape radius or after maxIterations.
+ */
+class ReferenceOrbit {
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+
+    final double[] re, im;
+    final double[] glitchLimit; // |Z|^2 * tolerance, a pixel below it has lost its precision
+    final int length;   // number of values, Z(length - 1) is the last one
+
+    ReferenceOrbit(BigDecimal cr, BigDecimal ci, int maxIterations, MathContext precision, double glitchTolerance) {
+        double[] re = new double[maxIterations + 1];
+        double[] im = new double[maxIterations + 1];
+        double[] glitchLimit = new double[maxIterations + 1];
+        BigDecimal zr = cr;
+        BigDecimal zi = ci;
+        int n = 0;
+        while (true) {
+            re[n] = zr.doubleValue();
+            im[n] = zi.doubleValue();
+            glitchLimit[n] = glitchTolerance * (re[n] * re[n] + im[n] * im[n]);
+            if (n == maxIterations || !(re[n] * re[n] + im[n] * im[n] < 4))
+                break;
+            BigDecimal newZr = zr.multiply(zr, precision).subtract(zi.multiply(zi, precision), precision).add(cr, precision);
+            zi = TWO.multiply(zr, precision).multiply(zi, precision).add(ci, precision);
+            zr = newZr;
+            n++;
+        }
+        this.re = re;
+        this.im = im;
+        this.glitchLimit = glitchLimit;
+        this.length = n + 1;
+    }
+}
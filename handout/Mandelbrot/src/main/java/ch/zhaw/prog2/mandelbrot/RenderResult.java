@@ -0,0 +1,27 @@
+package ch.zhaw.prog2.mandelbrot;
+
+/**
+ * Outcome of a job of the {@link RenderScheduler}.
+ * No getter and setters. Just use direct access to the fields.
+ */
+public class RenderResult {
+    public final long job;
+    public final boolean cancelled;    // whether the job was stopped before all tiles were delivered
+    public final long durationMillis;
+    public final int tiles;            // number of tiles passed to the consumer
+    public final long pixels;          // number of pixels in these tiles
+
+    RenderResult(long job, boolean cancelled, long durationMillis, int tiles, long pixels) {
+        this.job = job;
+        this.cancelled = cancelled;
+        this.durationMillis = durationMillis;
+        this.tiles = tiles;
+        this.pixels = pixels;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("job %d %s after %dms, %d tiles, %d pixels",
+            job, cancelled ? "cancelled" : "finished", durationMillis, tiles, pixels);
+    }
+}
@@ -0,0 +1,105 @@
+package ch.zhaw.prog2.mandelbrot;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs one render job at a time on the threads of a {@link MandelbrotEngine}.
+ * Submitting a job cancels the previous one, which stops within one tile, while the threads
+ * of the engine are kept for the next job. Tiles are only passed on while their job is
+ * neither cancelled nor replaced; as a tile may still be in transit when the job is replaced,
+ * a consumer which draws later (e.g. once per frame) should check {@link #isCurrent} again.
+ */
+public class RenderScheduler {
+
+    /**
+     * The work of a job: renders tiles into the consumer until done or cancelled.
+     */
+    @FunctionalInterface
+    public interface Task {
+        void render(TileConsumer consumer, CancellationToken token);
+    }
+
+    /**
+     * Receives the tiles of the jobs, together with the id of their job.
+     */
+    @FunctionalInterface
+    public interface TileListener {
+        void tileComputed(long job, int x, int y, int width, int height, int[] iterations);
+    }
+
+    /**
+     * A submitted job. No getter and setters. Just use direct access to the fields.
+     */
+    public static class Job {
+        public final long id;
+        public final CancellationToken token = new CancellationToken();
+        // completed normally also when cancelled, see RenderResult.cancelled
+        public final CompletableFuture<RenderResult> result;
+
+        private Job(long id, CompletableFuture<RenderResult> result) {
+            this.id = id;
+            this.result = result;
+        }
+
+        public void cancel() {
+            token.cancel();
+        }
+    }
+
+    private final AtomicLong jobs = new AtomicLong();
+    private volatile Job current;
+
+    /** whether the job with the given id is the last one submitted and not cancelled */
+    public boolean isCurrent(long job) {
+        Job currentJob = current;
+        return currentJob != null && currentJob.id == job && !currentJob.token.isCancelled();
+    }
+
+    /**
+     * Cancels the running job, if any, and starts the given one on the threads of the engine.
+     * Must not be called by several threads at the same time.
+     */
+    public Job submit(MandelbrotEngine engine, TileListener listener, Task task) {
+        cancel();
+        CompletableFuture<RenderResult> result = new CompletableFuture<>();
+        Job job = new Job(jobs.incrementAndGet(), result);
+        current = job;
+        CompletableFuture.runAsync(() -> run(job, listener, task), engine.pool())
+            .whenComplete((ignored, error) -> {
+                if (error != null)
+                    result.completeExceptionally(error);
+            });
+        // cancelling the future stops the job as well
+        result.whenComplete((ignored, error) -> {
+            if (result.isCancelled())
+                job.cancel();
+        });
+        return job;
+    }
+
+    private void run(Job job, TileListener listener, Task task) {
+        long startTime = System.currentTimeMillis();
+        AtomicInteger tiles = new AtomicInteger();
+        AtomicLong pixels = new AtomicLong();
+        if (!job.token.isCancelled()) {
+            task.render((x, y, width, height, iterations) -> {
+                if (isCurrent(job.id)) {
+                    listener.tileComputed(job.id, x, y, width, height, iterations);
+                    tiles.incrementAndGet();
+                    pixels.addAndGet((long) width * height);
+                }
+            }, job.token);
+        }
+        job.result.complete(new RenderResult(job.id, job.token.isCancelled(),
+            System.currentTimeMillis() - startTime, tiles.get(), pixels.get()));
+    }
+
+    /** cancels the running job, if any */
+    public void cancel() {
+        Job currentJob = current;
+        if (currentJob != null)
+            currentJob.cancel();
+    }
+}
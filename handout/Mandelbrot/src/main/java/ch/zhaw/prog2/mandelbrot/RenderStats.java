@@ -0,0 +1,130 @@
+package ch.zhaw.prog2.mandelbrot;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records per worker thread how long it was busy computing tiles, how many tiles and rows
+ * it delivered and how many iterations it computed. The idle time of a worker is the time
+ * since the last {@link #reset()} in which it was not busy, so the numbers show how evenly
+ * the work was distributed. Enable recording with {@link MandelbrotEngine#setStats}.
+ */
+public class RenderStats {
+
+    /**
+     * The numbers of one worker thread. Only this thread updates them.
+     */
+    public static class Worker {
+        public final String name;
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong tiles = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong iterations = new AtomicLong();
+
+        Worker(String name) {
+            this.name = name;
+        }
+
+        public long busyNanos() {
+            return busyNanos.get();
+        }
+
+        public long tiles() {
+            return tiles.get();
+        }
+
+        public long rows() {
+            return rows.get();
+        }
+
+        public long iterations() {
+            return iterations.get();
+        }
+    }
+
+    private final ConcurrentMap<Thread, Worker> workers = new ConcurrentHashMap<>();
+    private volatile long startNanos = System.nanoTime();
+
+    /** called by TileTask after computing the given rows of a tile */
+    void record(long busyNanos, int rows, long iterations) {
+        Worker worker = workers.computeIfAbsent(Thread.currentThread(), thread -> new Worker(thread.getName()));
+        worker.busyNanos.addAndGet(busyNanos);
+        worker.tiles.incrementAndGet();
+        worker.rows.addAndGet(rows);
+        worker.iterations.addAndGet(iterations);
+    }
+
+    /**
+     * Forgets all numbers and starts a new measurement.
+     */
+    public void reset() {
+        workers.clear();
+        startNanos = System.nanoTime();
+    }
+
+    /** time since the last reset */
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /** the workers which delivered at least one tile, sorted by name */
+    public List<Worker> workers() {
+        List<Worker> list = new ArrayList<>(workers.values());
+        list.sort(Comparator.comparing(worker -> worker.name));
+        return list;
+    }
+
+    public long busyNanos() {
+        return workers().stream().mapToLong(Worker::busyNanos).sum();
+    }
+
+    /**
+     * Busy time of the busiest worker divided by the mean busy time of the given number of threads,
+     * 1.0 if the work was perfectly balanced.
+     */
+    public double imbalance(int threads) {
+        long busy = busyNanos();
+        long max = workers().stream().mapToLong(Worker::busyNanos).max().orElse(0);
+        return busy == 0 ? 1.0 : (double) max * threads / busy;
+    }
+
+    public String toCsv() {
+        long elapsed = elapsedNanos();
+        StringBuilder csv = new StringBuilder("worker,tiles,rows,iterations,busy_ms,idle_ms\n");
+        for (Worker worker : workers()) {
+            csv.append(String.format("%s,%d,%d,%d,%.3f,%.3f%n", worker.name, worker.tiles(), worker.rows(),
+                worker.iterations(), worker.busyNanos() / 1e6, Math.max(0, elapsed - worker.busyNanos()) / 1e6));
+        }
+        return csv.toString();
+    }
+
+    public String toJson() {
+        long elapsed = elapsedNanos();
+        StringBuilder json = new StringBuilder(String.format("{\"elapsed_ms\": %.3f, \"workers\": [", elapsed / 1e6));
+        String separator = "\n";
+        for (Worker worker : workers()) {
+            json.append(separator).append(String.format(
+                "  {\"worker\": \"%s\", \"tiles\": %d, \"rows\": %d, \"iterations\": %d, \"busy_ms\": %.3f, \"idle_ms\": %.3f}",
+                worker.name.replace("\\", "\\\\").replace("\"", "\\\""), worker.tiles(), worker.rows(),
+                worker.iterations(), worker.busyNanos() / 1e6, Math.max(0, elapsed - worker.busyNanos()) / 1e6));
+            separator = ",\n";
+        }
+        return json.append("\n]}\n").toString();
+    }
+
+    /**
+     * Writes the numbers as JSON if the file name ends with .json, otherwise as CSV.
+     */
+    public void write(Path path) throws IOException {
+        String content = path.getFileName().toString().toLowerCase().endsWith(".json") ? toJson() : toCsv();
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
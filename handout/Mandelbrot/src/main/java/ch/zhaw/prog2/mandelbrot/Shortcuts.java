@@ -0,0 +1,125 @@
+package ch.zhaw.prog2.mandelbrot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Selects the shortcuts which avoid iterating points inside the Mandelbrot set up to the maximum:
+ * <ul>
+ *     <li>cardioid: points in the main cardioid or the period-2 bulb are recognized by a formula</li>
+ *     <li>periodicity: the orbit is compared to a saved earlier value; if it repeats exactly,
+ *         it can never escape</li>
+ *     <li>rectangles: if the whole border of a rectangle is inside the set, so is the rectangle
+ *         (Mariani-Silver), only the border has to be computed</li>
+ * </ul>
+ * Only cardioid and periodicity are exact, they produce the same counts as the full iteration.
+ * Filling rectangles is based on the set being full (its complement is connected, so a region
+ * enclosed by points of the set contains no escaping point). But the border is only known at
+ * the sampled pixels, an escaping filament can pass between two of them, so the rectangles
+ * shortcut is an approximation; the CLI option --verify checks its result against the full
+ * iteration. Instances are immutable.
+ */
+public class Shortcuts {
+    public static final Shortcuts NONE = new Shortcuts(false, false, false);
+    /** the shortcuts which produce the same counts as the full iteration */
+    public static final Shortcuts EXACT = new Shortcuts(true, true, false);
+    public static final Shortcuts ALL = new Shortcuts(true, true, true);
+    /** shortcuts selected by the system property mandelbrot.shortcuts, EXACT by default or if it is invalid */
+    public static final Shortcuts DEFAULT = fromProperty("mandelbrot.shortcuts", EXACT);
+
+    public final boolean cardioid;
+    public final boolean periodicity;
+    public final boolean rectangles;
+
+    public Shortcuts(boolean cardioid, boolean periodicity, boolean rectangles) {
+        this.cardioid = cardioid;
+        this.periodicity = periodicity;
+        this.rectangles = rectangles;
+    }
+
+    /**
+     * @param names comma separated list of cardioid, periodicity, rectangles or one of exact, all, none
+     */
+    public static Shortcuts parse(String names) {
+        boolean cardioid = false;
+        boolean periodicity = false;
+        boolean rectangles = false;
+        for (String name : names.split(",")) {
+            switch (name.trim().toLowerCase()) {
+                case "all":
+                    return ALL;
+                case "exact":
+                    cardioid = true;
+                    periodicity = true;
+                    break;
+                case "none":
+                    break;
+                case "cardioid":
+                    cardioid = true;
+                    break;
+                case "periodicity":
+                    periodicity = true;
+                    break;
+                case "rectangles":
+                    rectangles = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown shortcut " + name);
+            }
+        }
+        return new Shortcuts(cardioid, periodicity, rectangles);
+    }
+
+    /* an invalid value must not fail the initialization of the class, so it only prints a message */
+    private static Shortcuts fromProperty(String property, Shortcuts fallback) {
+        String names = System.getProperty(property);
+        if (names == null)
+            return fallback;
+        try {
+            return parse(names);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid shortcuts " + names + " in " + property + ", using " + fallback);
+            return fallback;
+        }
+    }
+
+    /**
+     * Whether the point is inside the main cardioid or the period-2 bulb of the set.
+     */
+    static boolean insideCardioidOrBulb(double cr, double ci) {
+        double xq = cr - 0.25;
+        double q = xq * xq + ci * ci;
+        if (q * (q + xq) <= 0.25 * ci * ci)
+            return true;
+        double xb = cr + 1;
+        return xb * xb + ci * ci <= 0.0625;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other)
+            return true;
+        if (!(other instanceof Shortcuts))
+            return false;
+        Shortcuts shortcuts = (Shortcuts) other;
+        return cardioid == shortcuts.cardioid && periodicity == shortcuts.periodicity
+            && rectangles == shortcuts.rectangles;
+    }
+
+    @Override
+    public int hashCode() {
+        return (cardioid ? 1 : 0) | (periodicity ? 2 : 0) | (rectangles ? 4 : 0);
+    }
+
+    @Override
+    public String toString() {
+        List<String> names = new ArrayList<>();
+        if (cardioid)
+            names.add("cardioid");
+        if (periodicity)
+            names.add("periodicity");
+        if (rectangles)
+            names.add("rectangles");
+        return names.isEmpty() ? "none" : String.join(",", names);
+    }
+}
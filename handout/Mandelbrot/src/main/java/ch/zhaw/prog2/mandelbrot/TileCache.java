@@ -0,0 +1,149 @@
+package ch.zhaw.prog2.mandelbrot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thread-safe cache of the iteration counts of tiles with a bounded memory size.
+ * When the cache is full, the least recently used tiles are evicted (LRU, by a LinkedHashMap
+ * in access order). If a spill directory is given, evicted tiles are written into it and
+ * read back when they are needed again, so they do not have to be computed a second time.
+ * The disk cache is not bounded and is kept after closing the application.
+ * The cached arrays are shared and must not be modified.
+ */
+public class TileCache {
+    private final long maxBytes;
+    private final Path spillDirectory;
+    private final LinkedHashMap<TileKey, int[]> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+    private long hits, diskHits, misses;
+
+    public TileCache(long maxBytes) {
+        this(maxBytes, null);
+    }
+
+    /**
+     * @param spillDirectory directory for the evicted tiles, created if needed, or null for none
+     */
+    public TileCache(long maxBytes, Path spillDirectory) {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("maxBytes must be positive");
+        this.maxBytes = maxBytes;
+        this.spillDirectory = spillDirectory;
+    }
+
+    private static long sizeOf(int[] iterations) {
+        return (long) iterations.length * Integer.BYTES;
+    }
+
+    /**
+     * @return the counts of the tile or null if it is neither in memory nor on the disk
+     */
+    public int[] get(TileKey key) {
+        synchronized (this) {
+            int[] iterations = tiles.get(key);
+            if (iterations != null) {
+                hits++;
+                return iterations;
+            }
+        }
+        int[] iterations = readSpilled(key);
+        synchronized (this) {
+            if (iterations == null)
+                misses++;
+            else
+                diskHits++;
+        }
+        if (iterations != null)
+            put(key, iterations);
+        return iterations;
+    }
+
+    public void put(TileKey key, int[] iterations) {
+        List<Map.Entry<TileKey, int[]>> evicted = new ArrayList<>();
+        synchronized (this) {
+            int[] previous = tiles.put(key, iterations);
+            if (previous != null)
+                bytes -= sizeOf(previous);
+            bytes += sizeOf(iterations);
+            Iterator<Map.Entry<TileKey, int[]>> eldest = tiles.entrySet().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<TileKey, int[]> entry = eldest.next();
+                if (entry.getKey().equals(key))
+                    continue; // keep the new tile
+                bytes -= sizeOf(entry.getValue());
+                evicted.add(entry);
+                eldest.remove();
+            }
+        }
+        // the files are written outside the lock, so other threads are not blocked by the disk
+        for (Map.Entry<TileKey, int[]> entry : evicted)
+            spill(entry.getKey(), entry.getValue());
+    }
+
+    private void spill(TileKey key, int[] iterations) {
+        if (spillDirectory == null)
+            return;
+        try {
+            Files.createDirectories(spillDirectory);
+            Path file = spillDirectory.resolve(key.fileName());
+            if (Files.exists(file))
+                return;
+            ByteBuffer buffer = ByteBuffer.allocate(iterations.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.asIntBuffer().put(iterations);
+            // written to a temporary file first, so a reader never sees a partial tile
+            Path temporary = Files.createTempFile(spillDirectory, key.fileName(), ".tmp");
+            Files.write(temporary, buffer.array());
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the tile is only lost from the cache and will be computed again when needed
+            System.err.println("Could not spill " + key + ": " + e.getMessage());
+        }
+    }
+
+    private int[] readSpilled(TileKey key) {
+        if (spillDirectory == null)
+            return null;
+        Path file = spillDirectory.resolve(key.fileName());
+        if (!Files.exists(file))
+            return null;
+        try {
+            byte[] content = Files.readAllBytes(file);
+            if (content.length % Integer.BYTES != 0)
+                return null;
+            int[] iterations = new int[content.length / Integer.BYTES];
+            ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(iterations);
+            return iterations;
+        } catch (IOException e) {
+            return null; // computed again
+        }
+    }
+
+    public synchronized int size() {
+        return tiles.size();
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    public synchronized void clear() {
+        tiles.clear();
+        bytes = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d tiles, %d MB, %d hits, %d disk hits, %d misses",
+            tiles.size(), bytes >> 20, hits, diskHits, misses);
+    }
+}
@@ -0,0 +1,12 @@
+package ch.zhaw.prog2.mandelbrot;
+
+/**
+ * Receives the iteration counts of computed tiles, called by the worker threads.
+ */
+public interface TileConsumer {
+    /**
+     * The count of the pixel (x + col, y + row) is at index row * width + col;
+     * the array may be longer than width * height and must not be kept after returning.
+     */
+    void accept(int x, int y, int width, int height, int[] iterations);
+}
@@ -0,0 +1,57 @@
+package ch.zhaw.prog2.mandelbrot;
+
+/**
+ * Identifies a tile of the fixed grid used by the {@link TiledRenderer}:
+ * the zoom level, the position of the tile in the grid of this level, the depth
+ * and the kernel and shortcuts it is computed with, as the rectangles shortcut changes the result.
+ * Instances are immutable.
+ */
+public final class TileKey {
+    public final int zoom;
+    public final long tileX, tileY;
+    public final int maxIterations;
+    public final IterationKernel kernel;
+    public final Shortcuts shortcuts;
+
+    public TileKey(int zoom, long tileX, long tileY, int maxIterations, IterationKernel kernel, Shortcuts shortcuts) {
+        this.zoom = zoom;
+        this.tileX = tileX;
+        this.tileY = tileY;
+        this.maxIterations = maxIterations;
+        this.kernel = kernel;
+        this.shortcuts = shortcuts;
+    }
+
+    /** name of the file of the tile in the disk cache */
+    String fileName() {
+        return "z" + zoom + "_" + tileX + "_" + tileY + "_" + maxIterations + "_" + kernel.name().toLowerCase()
+            + "_" + shortcuts.toString().replace(',', '+') + ".tile";
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other)
+            return true;
+        if (!(other instanceof TileKey))
+            return false;
+        TileKey key = (TileKey) other;
+        return zoom == key.zoom && tileX == key.tileX && tileY == key.tileY && maxIterations == key.maxIterations
+            && kernel == key.kernel && shortcuts.equals(key.shortcuts);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = zoom;
+        hash = 31 * hash + Long.hashCode(tileX);
+        hash = 31 * hash + Long.hashCode(tileY);
+        hash = 31 * hash + maxIterations;
+        hash = 31 * hash + kernel.ordinal();
+        return 31 * hash + shortcuts.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "tile " + tileX + "/" + tileY + " at zoom " + zoom + " (" + maxIterations + " iterations, "
+            + kernel.name().toLowerCase() + " kernel, shortcuts: " + shortcuts + ")";
+    }
+}
@@ -0,0 +1,264 @@
+package ch.zhaw.prog2.mandelbrot;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Computes the iteration counts of a rectangular tile of the image in a ForkJoinPool.
+ * <p>
+ * The cost of a pixel varies hugely (up to maxIterations inside the set), so the image is
+ * not divided into equal parts in advance. Large tiles are split into quarters, and while
+ * computing a tile row by row, the iterations are counted: as soon as a tile has used up its
+ * budget, the computed rows are delivered and the remaining rows are split into two new
+ * tasks, which idle workers can steal. Cheap regions therefore stay in big tiles with little
+ * overhead, while expensive regions are divided until all workers are busy.
+ * <p>
+ * For progressive rendering, a job may compute only every step-th pixel in both directions
+ * and fill the rest of each step x step block with its value. The counts of the previous pass
+ * (with twice the step) are then taken from the image instead of computing them again.
+ * Tiles always start at multiples of {@link #ALIGNMENT}, so every block lies within one tile.
+ * <p>
+ * With the rectangles shortcut, a tile of a full resolution job computes only its border first.
+ * If the whole border is inside the set, the tile is filled, otherwise it is divided into four
+ * rectangles by computing a middle row and column, which are handled in the same way (Mariani-Silver).
+ * This is an approximation, see {@link Shortcuts}.
+ */
+class TileTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    static final int MAX_TILE_SIZE = 64;            // larger tiles are split before computing
+    static final long ITERATION_BUDGET = 1_000_000; // iterations before the rest of a tile is split off
+    static final int ALIGNMENT = 4;                 // largest step of a progressive pass
+    static final int MIN_RECTANGLE = 6;             // smaller rectangles are computed without dividing
+
+    /**
+     * The parameters shared by all tiles of one image resp. pass.
+     */
+    static class Job {
+        final Viewport viewport;
+        final double xmin, ymax, dx, dy;
+        final int maxIterations;
+        final IterationKernel kernel;
+        final Shortcuts shortcuts;
+        final TileConsumer consumer;
+        final BooleanSupplier cancelled;
+        final int step;           // only every step-th pixel is computed
+        final int[] image;        // counts of the whole image, written after each tile, or null
+        final boolean reuse;      // whether the image contains the previous pass with step * 2
+        final LongAdder computedIterations = new LongAdder();
+        final LongAdder savedIterations = new LongAdder();   // by the shortcuts
+        RenderStats stats;        // records the work of each worker, or null
+
+        Job(Viewport viewport, int maxIterations, IterationKernel kernel, Shortcuts shortcuts,
+            TileConsumer consumer, BooleanSupplier cancelled) {
+            this(viewport, maxIterations, kernel, shortcuts, consumer, cancelled, 1, null, false);
+        }
+
+        Job(Viewport viewport, int maxIterations, IterationKernel kernel, Shortcuts shortcuts, TileConsumer consumer,
+            BooleanSupplier cancelled, int step, int[] image, boolean reuse) {
+            if (step < 1 || ALIGNMENT % step != 0)
+                throw new IllegalArgumentException("step must divide " + ALIGNMENT);
+            if ((step > 1 || reuse) && image == null)
+                throw new IllegalArgumentException("progressive passes need an image");
+            this.viewport = viewport;
+            this.xmin = viewport.xmin;
+            this.ymax = viewport.ymax;
+            this.dx = viewport.dx();
+            this.dy = viewport.dy();
+            this.maxIterations = maxIterations;
+            this.kernel = kernel;
+            this.shortcuts = shortcuts;
+            this.consumer = consumer;
+            this.cancelled = cancelled;
+            this.step = step;
+            this.image = image;
+            this.reuse = reuse;
+        }
+    }
+
+    private final Job job;
+    private final int x, y, width, height;
+    private long spent;   // iterations computed by this task
+    private long saved;   // iterations saved by this task
+    private long busyStart;  // start of the work not recorded in the stats yet
+
+    /**
+     * Task computing the whole image of the job.
+     */
+    TileTask(Job job) {
+        this(job, 0, 0, job.viewport.width, job.viewport.height);
+    }
+
+    TileTask(Job job, int x, int y, int width, int height) {
+        this.job = job;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    protected void compute() {
+        if (job.cancelled.getAsBoolean())
+            return;
+        if (width > MAX_TILE_SIZE || height > MAX_TILE_SIZE) {
+            int leftWidth = width > MAX_TILE_SIZE ? width / 2 / ALIGNMENT * ALIGNMENT : width;
+            int topHeight = height > MAX_TILE_SIZE ? height / 2 / ALIGNMENT * ALIGNMENT : height;
+            int rightWidth = width - leftWidth;
+            int bottomHeight = height - topHeight;
+            if (rightWidth == 0)
+                invokeAll(new TileTask(job, x, y, width, topHeight),
+                    new TileTask(job, x, y + topHeight, width, bottomHeight));
+            else if (bottomHeight == 0)
+                invokeAll(new TileTask(job, x, y, leftWidth, height),
+                    new TileTask(job, x + leftWidth, y, rightWidth, height));
+            else
+                invokeAll(new TileTask(job, x, y, leftWidth, topHeight),
+                    new TileTask(job, x + leftWidth, y, rightWidth, topHeight),
+                    new TileTask(job, x, y + topHeight, leftWidth, bottomHeight),
+                    new TileTask(job, x + leftWidth, y + topHeight, rightWidth, bottomHeight));
+            return;
+        }
+        if (job.stats != null)
+            busyStart = System.nanoTime();
+        int[] iterations = new int[width * height];
+        if (job.shortcuts.rectangles && job.step == 1 && !job.reuse) {
+            computeRectangles(iterations);
+            if (!job.cancelled.getAsBoolean())
+                deliver(height, iterations);
+            return;
+        }
+        if (job.reuse)
+            copyFromImage(iterations);
+        for (int row = 0; row < height; row++) {
+            if ((y + row) % job.step == 0)
+                computeRow(row, iterations);
+            if (job.cancelled.getAsBoolean())
+                return;
+            int remaining = height - row - 1;
+            int upper = remaining / 2 / ALIGNMENT * ALIGNMENT;
+            if (spent > ITERATION_BUDGET && (row + 1) % ALIGNMENT == 0 && upper > 0) {
+                // expensive tile: deliver what we have and let others help with the rest
+                deliver(row + 1, iterations);
+                invokeAll(new TileTask(job, x, y + row + 1, width, upper),
+                    new TileTask(job, x, y + row + 1 + upper, width, remaining - upper));
+                return;
+            }
+        }
+        deliver(height, iterations);
+    }
+
+    /*
+     * Computes the pixels of one row which belong to this pass.
+     * In a row of the previous pass, only the pixels between the ones of the previous pass are computed.
+     */
+    private void computeRow(int row, int[] iterations) {
+        int step = job.step;
+        int first = 0;
+        if (job.reuse && (y + row) % (2 * step) == 0) {
+            first = step;
+            step *= 2;
+        }
+        computePixels(row, first, width - first, step, iterations);
+    }
+
+    /* computes every step-th pixel of the given part of a row and counts the iterations */
+    private void computePixels(int row, int col, int count, int step, int[] iterations) {
+        if (count <= 0)
+            return;
+        int offset = row * width + col;
+        long computed = job.kernel.computeRow(job.xmin, job.dx, job.ymax - job.dy * (y + row), x + col,
+            count, step, job.maxIterations, job.shortcuts, iterations, offset);
+        long total = 0;
+        for (int i = 0; i < count; i += step)
+            total += iterations[offset + i];
+        spent += computed;
+        saved += total - computed;
+    }
+
+    /* Mariani-Silver: computes the border of the tile, then fills or divides it */
+    private void computeRectangles(int[] iterations) {
+        computePixels(0, 0, width, 1, iterations);
+        computePixels(height - 1, 0, width, 1, iterations);
+        for (int row = 1; row < height - 1; row++) {
+            computePixels(row, 0, 1, 1, iterations);
+            computePixels(row, width - 1, 1, 1, iterations);
+        }
+        fillRectangle(0, 0, width - 1, height - 1, iterations);
+    }
+
+    /* computes the inside of the rectangle, whose border has already been computed */
+    private void fillRectangle(int left, int top, int right, int bottom, int[] iterations) {
+        if (right - left < 2 || bottom - top < 2 || job.cancelled.getAsBoolean())
+            return; // no inside
+        if (borderInsideSet(left, top, right, bottom, iterations)) {
+            int maxIterations = job.maxIterations;
+            for (int row = top + 1; row < bottom; row++) {
+                for (int col = left + 1; col < right; col++)
+                    iterations[row * width + col] = maxIterations;
+            }
+            saved += (long) (right - left - 1) * (bottom - top - 1) * maxIterations;
+        } else if (right - left <= MIN_RECTANGLE || bottom - top <= MIN_RECTANGLE) {
+            for (int row = top + 1; row < bottom; row++)
+                computePixels(row, left + 1, right - left - 1, 1, iterations);
+        } else {
+            int middleCol = (left + right) / 2;
+            int middleRow = (top + bottom) / 2;
+            computePixels(middleRow, left + 1, right - left - 1, 1, iterations);
+            for (int row = top + 1; row < bottom; row++) {
+                if (row != middleRow)
+                    computePixels(row, middleCol, 1, 1, iterations);
+            }
+            fillRectangle(left, top, middleCol, middleRow, iterations);
+            fillRectangle(middleCol, top, right, middleRow, iterations);
+            fillRectangle(left, middleRow, middleCol, bottom, iterations);
+            fillRectangle(middleCol, middleRow, right, bottom, iterations);
+        }
+    }
+
+    private boolean borderInsideSet(int left, int top, int right, int bottom, int[] iterations) {
+        int maxIterations = job.maxIterations;
+        for (int col = left; col <= right; col++) {
+            if (iterations[top * width + col] < maxIterations || iterations[bottom * width + col] < maxIterations)
+                return false;
+        }
+        for (int row = top + 1; row < bottom; row++) {
+            if (iterations[row * width + left] < maxIterations || iterations[row * width + right] < maxIterations)
+                return false;
+        }
+        return true;
+    }
+
+    private void copyFromImage(int[] iterations) {
+        int imageWidth = job.viewport.width;
+        for (int row = 0; row < height; row++)
+            System.arraycopy(job.image, (y + row) * imageWidth + x, iterations, row * width, width);
+    }
+
+    /* fills the blocks of the first rows, stores them in the image and passes them to the consumer */
+    private void deliver(int rows, int[] iterations) {
+        int step = job.step;
+        if (step > 1) {
+            for (int row = 0; row < rows; row++) {
+                int source = row - row % step; // x and y are multiples of the step
+                for (int col = 0; col < width; col++)
+                    iterations[row * width + col] = iterations[source * width + col - col % step];
+            }
+        }
+        if (job.image != null) {
+            int imageWidth = job.viewport.width;
+            for (int row = 0; row < rows; row++)
+                System.arraycopy(iterations, row * width, job.image, (y + row) * imageWidth + x, width);
+        }
+        job.computedIterations.add(spent);
+        job.savedIterations.add(saved);
+        if (job.stats != null) {
+            long now = System.nanoTime();
+            job.stats.record(now - busyStart, rows, spent);
+            busyStart = now;
+        }
+        spent = 0;
+        saved = 0;
+        job.consumer.accept(x, y, width, rows, iterations);
+    }
+}
@@ -0,0 +1,145 @@
+package ch.zhaw.prog2.mandelbrot;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Renders views for interactive panning and zooming from a grid of cached tiles.
+ * <p>
+ * Every zoom level divides the complex plane into tiles of {@link #TILE_SIZE} pixels;
+ * at level 0 a tile covers 4 units, with each level the size of a pixel is halved.
+ * A view is given by its zoom level and the global pixel coordinates of its top left corner,
+ * where the pixel (px, py) shows the point px * scale - i * py * scale. As long as a view is
+ * moved by whole pixels, it consists of the same tiles, so only the tiles which become visible
+ * have to be computed; all others are taken from the {@link TileCache}.
+ */
+public class TiledRenderer {
+    public static final int TILE_SIZE = 256;
+    private static final double BASE_SCALE = 4.0 / TILE_SIZE;
+
+    private final MandelbrotEngine engine;
+    private final TileCache cache;
+
+    public TiledRenderer(MandelbrotEngine engine, TileCache cache) {
+        this.engine = engine;
+        this.cache = cache;
+    }
+
+    /** size of a pixel at the given zoom level */
+    public static double scale(int zoom) {
+        return Math.scalb(BASE_SCALE, -zoom);
+    }
+
+    /** global pixel coordinate of the given real part */
+    public static long pixelX(double re, int zoom) {
+        return Math.round(re / scale(zoom));
+    }
+
+    /** global pixel coordinate of the given imaginary part */
+    public static long pixelY(double im, int zoom) {
+        return Math.round(-im / scale(zoom));
+    }
+
+    /** the area of the complex plane covered by the tile */
+    public static Viewport viewport(TileKey key) {
+        double scale = scale(key.zoom);
+        double left = key.tileX * TILE_SIZE;
+        double top = key.tileY * TILE_SIZE;
+        return new Viewport(left * scale, (left + TILE_SIZE - 1) * scale,
+            -(top + TILE_SIZE - 1) * scale, -top * scale, TILE_SIZE, TILE_SIZE);
+    }
+
+    /**
+     * Renders the view of width x height pixels whose top left corner is the global pixel (originX, originY).
+     * Cached tiles are passed to the consumer at once, the others (starting in the center) as soon as
+     * they are computed. The missing tiles are computed together, pass by pass, so in progressive mode
+     * a coarse preview of the whole view is shown first. The coordinates passed to the consumer are
+     * relative to the view.
+     * The tiles are computed and looked up with the kernel and shortcuts selected in the engine.
+     * Returns when all tiles are done or the computation was cancelled.
+     *
+     * @param progressive whether missing tiles are computed in passes of increasing resolution
+     */
+    public void render(int zoom, long originX, long originY, int width, int height, int maxIterations,
+                       boolean progressive, TileConsumer consumer, BooleanSupplier cancelled) {
+        List<TileKey> missing = new ArrayList<>();
+        IterationKernel kernel = engine.getKernel();
+        Shortcuts shortcuts = engine.getShortcuts();
+        long firstX = Math.floorDiv(originX, TILE_SIZE);
+        long firstY = Math.floorDiv(originY, TILE_SIZE);
+        long lastX = Math.floorDiv(originX + width - 1, TILE_SIZE);
+        long lastY = Math.floorDiv(originY + height - 1, TILE_SIZE);
+        for (long tileY = firstY; tileY <= lastY; tileY++) {
+            for (long tileX = firstX; tileX <= lastX; tileX++) {
+                TileKey key = new TileKey(zoom, tileX, tileY, maxIterations, kernel, shortcuts);
+                int[] iterations = cache.get(key);
+                if (iterations == null)
+                    missing.add(key);
+                else
+                    deliver(key, 0, 0, TILE_SIZE, TILE_SIZE, iterations, originX, originY, width, height, consumer);
+            }
+        }
+        // compute the tiles in the center of the view first
+        long centerX = originX + width / 2 - TILE_SIZE / 2;
+        long centerY = originY + height / 2 - TILE_SIZE / 2;
+        missing.sort(Comparator.comparingLong(key ->
+            Math.abs(key.tileX * TILE_SIZE - centerX) + Math.abs(key.tileY * TILE_SIZE - centerY)));
+        int[][] tiles = new int[missing.size()][TILE_SIZE * TILE_SIZE];
+        AtomicIntegerArray computedPixels = new AtomicIntegerArray(missing.size()); // of the last pass
+        int[] steps = progressive ? MandelbrotEngine.PROGRESSIVE_STEPS : new int[] {1};
+        for (int pass = 0; pass < steps.length; pass++) {
+            if (cancelled.getAsBoolean())
+                return;
+            boolean lastPass = pass == steps.length - 1;
+            List<TileTask.Job> jobs = new ArrayList<>(missing.size());
+            for (int i = 0; i < missing.size(); i++) {
+                TileKey key = missing.get(i);
+                int index = i;
+                TileConsumer part = (x, y, w, h, iterations) -> {
+                    deliver(key, x, y, w, h, iterations, originX, originY, width, height, consumer);
+                    // only complete tiles are cached, as soon as their last part is computed
+                    if (lastPass && computedPixels.addAndGet(index, w * h) == TILE_SIZE * TILE_SIZE)
+                        cache.put(key, tiles[index]);
+                };
+                jobs.add(new TileTask.Job(viewport(key), maxIterations, kernel, shortcuts, part, cancelled,
+                    steps[pass], tiles[i], pass > 0));
+            }
+            engine.runAll(jobs);
+        }
+    }
+
+    /**
+     * Like {@link #render}, but returns immediately.
+     *
+     * @return future completed when all tiles are done or the computation was cancelled
+     */
+    public CompletableFuture<Void> submit(int zoom, long originX, long originY, int width, int height,
+                                          int maxIterations, boolean progressive,
+                                          TileConsumer consumer, BooleanSupplier cancelled) {
+        return CompletableFuture.runAsync(() -> render(zoom, originX, originY, width, height, maxIterations,
+            progressive, consumer, cancelled), engine.pool());
+    }
+
+    /* passes the visible part of the given part of a tile to the consumer */
+    private static void deliver(TileKey key, int x, int y, int w, int h, int[] iterations,
+                                long originX, long originY, int width, int height, TileConsumer consumer) {
+        long left = key.tileX * TILE_SIZE + x - originX;
+        long top = key.tileY * TILE_SIZE + y - originY;
+        int fromCol = (int) Math.max(0, -left);
+        int fromRow = (int) Math.max(0, -top);
+        int toCol = (int) Math.min(w, width - left);
+        int toRow = (int) Math.min(h, height - top);
+        if (fromCol >= toCol || fromRow >= toRow)
+            return;
+        int visibleWidth = toCol - fromCol;
+        int visibleHeight = toRow - fromRow;
+        int[] visible = new int[visibleWidth * visibleHeight];
+        for (int row = 0; row < visibleHeight; row++)
+            System.arraycopy(iterations, (fromRow + row) * w + fromCol, visible, row * visibleWidth, visibleWidth);
+        consumer.accept((int) left + fromCol, (int) top + fromRow, visibleWidth, visibleHeight, visible);
+    }
+}
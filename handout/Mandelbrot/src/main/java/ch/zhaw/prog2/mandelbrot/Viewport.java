@@ -0,0 +1,48 @@
+package ch.zhaw.prog2.mandelbrot;
+
+/**
+ * The area of the complex plane shown in an image of width x height pixels.
+ * The pixel (0, 0) is at the top left corner (xmin, ymax), the pixel
+ * (width-1, height-1) at the bottom right corner (xmax, ymin).
+ * Instances are immutable.
+ */
+public class Viewport {
+    public final double xmin, xmax, ymin, ymax;
+    public final int width, height;
+
+    public Viewport(double xmin, double xmax, double ymin, double ymax, int width, int height) {
+        if (width < 2 || height < 2)
+            throw new IllegalArgumentException("image must be at least 2x2 pixels");
+        this.xmin = xmin;
+        this.xmax = xmax;
+        this.ymin = ymin;
+        this.ymax = ymax;
+        this.width = width;
+        this.height = height;
+    }
+
+    /** distance between two pixels on the real axis */
+    public double dx() {
+        return (xmax - xmin) / (width - 1);
+    }
+
+    /** distance between two pixels on the imaginary axis */
+    public double dy() {
+        return (ymax - ymin) / (height - 1);
+    }
+
+    /** real part of the pixels in the given column */
+    public double x(int col) {
+        return xmin + dx() * col;
+    }
+
+    /** imaginary part of the pixels in the given row */
+    public double y(int row) {
+        return ymax - dy() * row;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%s, %s] x [%s, %s], %dx%d px", xmin, xmax, ymin, ymax, width, height);
+    }
+}
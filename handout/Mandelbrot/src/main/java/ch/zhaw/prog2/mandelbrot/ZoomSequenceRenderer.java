@@ -0,0 +1,227 @@
+package ch.zhaw.prog2.mandelbrot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Renders the frames of a zoom video into image files, in two pipelined stages:
+ * the engine computes one frame after the other with all its threads, while encoder
+ * threads color and write the finished frames. A bounded queue between the stages lets
+ * the computation run ahead of the encoders by a few frames, but not fill the memory.
+ * <p>
+ * The zoom keeps the center in place and shrinks the pixel size by the factor 2^(1/n) per frame,
+ * n being the frames per octave. The center lies on a pixel in an even row and column, so the
+ * pixels in even rows and columns of frame f lie exactly on the pixels of frame f - n, which had
+ * twice the pixel size (up to rounding in the last bit). Their counts are taken over and only
+ * the other three quarters of the pixels are computed. For this, the counts of the last n frames
+ * are kept, which needs n * width * height * 4 bytes.
+ */
+public class ZoomSequenceRenderer {
+    private static final int QUEUE_CAPACITY = 4;
+    private static final Frame END = new Frame(-1, null);
+
+    private final MandelbrotEngine engine;
+    private final int width, height;
+    private final int maxIterations;
+    private final Palette palette = Palette.spectrum(256);
+
+    public ZoomSequenceRenderer(MandelbrotEngine engine, int width, int height, int maxIterations) {
+        if (width < 2 || height < 2)
+            throw new IllegalArgumentException("image must be at least 2x2 pixels");
+        this.engine = engine;
+        this.width = width;
+        this.height = height;
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * The times of the stages. No getter and setters. Just use direct access to the fields.
+     */
+    public static class Report {
+        public final int frames;
+        public final long millis;
+        public final long computeMillis;     // time the engine was computing
+        public final long blockedMillis;     // time the computation waited for the encoders (queue full)
+        public final long encodeMillis;      // time of all encoder threads coloring and writing
+        public final long idleMillis;        // time of all encoder threads waiting for frames (queue empty)
+        public final long reusedPixels;      // taken over from earlier frames
+
+        Report(int frames, long millis, long computeMillis, long blockedMillis, long encodeMillis,
+               long idleMillis, long reusedPixels) {
+            this.frames = frames;
+            this.millis = millis;
+            this.computeMillis = computeMillis;
+            this.blockedMillis = blockedMillis;
+            this.encodeMillis = encodeMillis;
+            this.idleMillis = idleMillis;
+            this.reusedPixels = reusedPixels;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d frames in %dms (%.1f frames/s): computing %dms, waiting for encoders %dms,"
+                    + " encoding %dms, encoders idle %dms, %d pixels reused",
+                frames, millis, frames * 1000.0 / Math.max(1, millis), computeMillis, blockedMillis,
+                encodeMillis, idleMillis, reusedPixels);
+        }
+    }
+
+    /* a computed frame on its way to the encoders */
+    private static class Frame {
+        final int index;
+        final int[] iterations;
+
+        Frame(int index, int[] iterations) {
+            this.index = index;
+            this.iterations = iterations;
+        }
+    }
+
+    /** size of a pixel of the given frame, exactly half the size of the frame framesPerOctave before */
+    static double pixelSize(double startPixelSize, int frame, int framesPerOctave) {
+        double fraction = Math.pow(2, -(double) (frame % framesPerOctave) / framesPerOctave);
+        return Math.scalb(startPixelSize * fraction, -(frame / framesPerOctave));
+    }
+
+    /** the area of the frame with the center at the pixel (centerCol, centerRow) */
+    private Viewport viewport(double centerRe, double centerIm, double pixelSize) {
+        int centerCol = centerCol();
+        int centerRow = centerRow();
+        return new Viewport(centerRe - centerCol * pixelSize, centerRe + (width - 1 - centerCol) * pixelSize,
+            centerIm - (height - 1 - centerRow) * pixelSize, centerIm + centerRow * pixelSize, width, height);
+    }
+
+    private int centerCol() {
+        return width / 2 & ~1;
+    }
+
+    private int centerRow() {
+        return height / 2 & ~1;
+    }
+
+    /**
+     * Renders the frames and waits until all of them are written.
+     *
+     * @param startPixelSize  pixel size of the first frame
+     * @param framesPerOctave number of frames until the pixel size is halved
+     * @param format          png or ppm, the files are named frame00000.png etc.
+     * @param encoders        number of threads coloring and writing the frames
+     */
+    public Report render(double centerRe, double centerIm, double startPixelSize, int frames, int framesPerOctave,
+                         Path directory, String format, int encoders) throws IOException, InterruptedException {
+        if (frames < 1 || framesPerOctave < 1 || encoders < 1 || !(startPixelSize > 0))
+            throw new IllegalArgumentException("pixel size, frames, frames per octave and encoders must be positive");
+        if (!format.equals("png") && !format.equals("ppm"))
+            throw new IllegalArgumentException("unknown format " + format);
+        double lastPixelSize = pixelSize(startPixelSize, frames - 1, framesPerOctave);
+        if (lastPixelSize < 4 * Math.ulp(Math.abs(centerRe) + Math.abs(centerIm) + width * lastPixelSize))
+            throw new IllegalArgumentException(String.format(
+                "pixel size %.3e of the last frame is below the precision of double", lastPixelSize));
+        Files.createDirectories(directory);
+
+        BlockingQueue<Frame> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        AtomicLong encodeNanos = new AtomicLong();
+        AtomicLong idleNanos = new AtomicLong();
+        List<Thread> encoderThreads = new ArrayList<>();
+        for (int i = 0; i < encoders; i++) {
+            Thread encoder = new Thread(() -> encode(queue, directory, format, failure, encodeNanos, idleNanos),
+                "Encoder-" + i);
+            encoderThreads.add(encoder);
+            encoder.start();
+        }
+
+        long startTime = System.nanoTime();
+        long computeNanos = 0;
+        long blockedNanos = 0;
+        long reusedPixels = 0;
+        Deque<int[]> previous = new ArrayDeque<>(); // counts of the last framesPerOctave frames
+        int frame = 0;
+        try {
+            for (; frame < frames && failure.get() == null; frame++) {
+                long computeStart = System.nanoTime();
+                Viewport viewport = viewport(centerRe, centerIm, pixelSize(startPixelSize, frame, framesPerOctave));
+                int[] iterations;
+                if (previous.size() == framesPerOctave) {
+                    iterations = engine.refine(viewport, maxIterations, halfOf(previous.removeFirst()));
+                    reusedPixels += (long) ((width + 1) / 2) * ((height + 1) / 2);
+                } else {
+                    iterations = engine.render(viewport, maxIterations);
+                }
+                previous.addLast(iterations);
+                long computed = System.nanoTime();
+                computeNanos += computed - computeStart;
+                queue.put(new Frame(frame, iterations));
+                blockedNanos += System.nanoTime() - computed;
+            }
+        } finally {
+            for (int i = 0; i < encoders; i++)
+                queue.put(END);
+            for (Thread encoder : encoderThreads)
+                encoder.join();
+        }
+        Exception error = failure.get();
+        if (error instanceof IOException)
+            throw (IOException) error;
+        if (error != null)
+            throw (RuntimeException) error;
+        return new Report(frame, (System.nanoTime() - startTime) / 1_000_000, computeNanos / 1_000_000,
+            blockedNanos / 1_000_000, encodeNanos.get() / 1_000_000, idleNanos.get() / 1_000_000, reusedPixels);
+    }
+
+    /*
+     * The counts of the frame with half the pixel size in its even rows and columns, taken from the given
+     * frame: the center pixels coincide and are even, so the pixel 2m - center is the pixel m of the old frame.
+     */
+    private int[] halfOf(int[] old) {
+        int[] image = new int[width * height];
+        int centerCol = centerCol();
+        int centerRow = centerRow();
+        for (int row = 0; row < height; row += 2) {
+            int oldRow = (row + centerRow) / 2;
+            for (int col = 0; col < width; col += 2)
+                image[row * width + col] = old[oldRow * width + (col + centerCol) / 2];
+        }
+        return image;
+    }
+
+    /*
+     * The encoder stage: colors and writes frames until the end marker. After a failure, frames are
+     * still taken but dropped, so the computation never blocks on a full queue.
+     */
+    private void encode(BlockingQueue<Frame> queue, Path directory, String format, AtomicReference<Exception> failure,
+                        AtomicLong encodeNanos, AtomicLong idleNanos) {
+        int[] argb = new int[width * height];
+        try {
+            while (true) {
+                long waitStart = System.nanoTime();
+                Frame frame = queue.take();
+                long encodeStart = System.nanoTime();
+                idleNanos.addAndGet(encodeStart - waitStart);
+                if (frame == END)
+                    return;
+                if (failure.get() != null)
+                    continue;
+                try {
+                    palette.toArgb(frame.iterations, argb, argb.length, maxIterations);
+                    ImageFiles.write(directory.resolve(String.format("frame%05d.%s", frame.index, format)),
+                        width, height, argb);
+                } catch (IOException | RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                }
+                encodeNanos.addAndGet(System.nanoTime() - encodeStart);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package ch.zhaw.prog2.philosopher;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// ForkManager manages the resources (=forks), used by the philosophers.
+// Every fork has its own lock, so philosophers at different places of the table do not block each other.
+class ForkManager {
+
+    enum ForkState {
+        FREE, OCCUPIED
+    }
+
+    static class Fork {
+        public final Lock lock;
+        public final Condition cond;
+
+        public ForkState forkState;
+        public Fork() {
+            lock = new ReentrantLock();
+            cond = lock.newCondition();
+            forkState = ForkState.FREE;
+        }
+
+    }
+
+    private int nrForks;
+    private Fork[] forks;
+
+    public ForkManager(int nrForks) {
+        this.nrForks = nrForks;
+        this.forks = new Fork[nrForks];
+        for (int i = 0; i < nrForks; i++)
+            forks[i] = new Fork();
+    }
+
+    // Waits until the fork is free and takes it.
+    // An interrupted thread does not get the fork, the InterruptedException is passed on.
+    public void acquireFork(int i) throws InterruptedException {
+        Fork fork = forks[i];
+        fork.lock.lockInterruptibly();
+        try {
+            while (fork.forkState == ForkState.OCCUPIED)
+                fork.cond.await();
+            fork.forkState = ForkState.OCCUPIED;
+        } finally {
+            fork.lock.unlock();
+        }
+    }
+
+    // Acquires both forks, always the one with the lower number first.
+    // As every philosopher waits only for forks with a higher number than the ones already held,
+    // no cycle of waiting philosophers (and therefore no deadlock) is possible.
+    // If interrupted while waiting for the second fork, the first one is released again,
+    // so the caller holds either both forks or none.
+    public void acquireBoth(int left, int right) throws InterruptedException {
+        int first = Math.min(left, right);
+        acquireFork(first);
+        try {
+            acquireFork(Math.max(left, right));
+        } catch (InterruptedException e) {
+            releaseFork(first);
+            throw e;
+        }
+    }
+
+    public void releaseFork(int i) {
+        Fork fork = forks[i];
+        try {
+            fork.lock.lock();
+            fork.forkState = ForkState.FREE;
+            fork.cond.signal();
+        } finally {
+            fork.lock.unlock();
+        }
+    }
+
+    public void releaseBoth(int left, int right) {
+        releaseFork(left);
+        releaseFork(right);
+    }
+
+    public int left(int i) {
+        return (nrForks + i - 1) % nrForks;
+    }
+    public int right(int i) {
+        return (i + 1) % nrForks;
+    }
+
+}
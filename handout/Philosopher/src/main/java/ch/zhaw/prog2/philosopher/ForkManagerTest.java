@@ -0,0 +1,55 @@
+package ch.zhaw.prog2.philosopher;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lets many philosophers eat as fast as possible, without user interface and without thinking,
+ * and counts the meals per second. Checks that no fork is ever used by two philosophers at once.
+ * Usage: ForkManagerTest [philosophers (default 1000)] [seconds (default 5)]
+ */
+public class ForkManagerTest {
+    public static void main(String[] args) throws InterruptedException {
+        int philosopherCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        ForkManager forkManager = new ForkManager(philosopherCount);
+        AtomicIntegerArray users = new AtomicIntegerArray(philosopherCount); // philosophers using each fork
+        LongAdder meals = new LongAdder();
+        LongAdder conflicts = new LongAdder();
+        Thread[] philosophers = new Thread[philosopherCount];
+        for (int i = 0; i < philosopherCount; i++) {
+            int id = i;
+            int right = forkManager.right(id);
+            philosophers[i] = new Thread(() -> {
+                try {
+                    while (true) {
+                        forkManager.acquireBoth(id, right);
+                        if (users.incrementAndGet(id) != 1 | users.incrementAndGet(right) != 1)
+                            conflicts.increment();
+                        meals.increment();
+                        users.decrementAndGet(id);
+                        users.decrementAndGet(right);
+                        forkManager.releaseBoth(id, right);
+                    }
+                } catch (InterruptedException e) {
+                    // stopped, no fork is held
+                }
+            }, "Philosopher-" + i);
+        }
+        System.out.println(philosopherCount + " philosophers eating for " + seconds + "s on "
+            + Runtime.getRuntime().availableProcessors() + " processors ...");
+        for (Thread philosopher : philosophers)
+            philosopher.start();
+        long startTime = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        long count = meals.sum();
+        // with more philosophers than processors, this thread may wake up much later than requested
+        double elapsed = (System.nanoTime() - startTime) / 1e9;
+        for (Thread philosopher : philosophers)
+            philosopher.interrupt();
+        for (Thread philosopher : philosophers)
+            philosopher.join();
+        System.out.printf("%d meals in %.1fs (%.0f meals/s), %d forks used twice%n", count, elapsed, count / elapsed,
+            conflicts.sum());
+    }
+}
@@ -1,9 +1,6 @@
 package ch.zhaw.prog2.philosopher;
 
 import java.util.Observable;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 class PhilosopherTable extends Observable {
     private final int philoCount;
@@ -53,70 +50,6 @@ class PhilosopherTable extends Observable {
 }
 
 
-// ForkManager manages the resources (=forks), used by the philosophers
-class ForkManager {
-
-    enum ForkState {
-        FREE, OCCUPIED
-    }
-
-    static class Fork {
-        public final Condition cond;
-
-        public ForkState forkState;
-        public Fork(Lock m) {
-            cond = m.newCondition();
-            forkState = ForkState.FREE;
-        }
-
-    }
-
-    private int nrForks;
-    private Fork[] forks;
-
-    private Lock mutex;
-
-    public ForkManager(int nrForks) {
-        this.mutex = new ReentrantLock();
-        this.nrForks = nrForks;
-        this.forks = new Fork[nrForks];
-        for (int i = 0; i < nrForks; i++)
-            forks[i] = new Fork(mutex);
-    }
-
-    public void acquireFork(int i) {
-        try {
-            mutex.lock();
-            while (forks[i].forkState == ForkState.OCCUPIED)
-                forks[i].cond.await();
-            forks[i].forkState = ForkState.OCCUPIED;
-        } catch (InterruptedException e) {
-            System.err.println("Interrupted: " + e.getMessage());
-        } finally {
-            mutex.unlock();
-        }
-    }
-
-    public void releaseFork(int i) {
-        try {
-            mutex.lock();
-            forks[i].forkState = ForkState.FREE;
-            forks[i].cond.signal();
-        } finally {
-            mutex.unlock();
-        }
-    }
-
-    public int left(int i) {
-        return (nrForks + i - 1) % nrForks;
-    }
-    public int right(int i) {
-        return (i + 1) % nrForks;
-    }
-
-}
-
-
 class Philosopher extends Thread {
     private final static int THINK_TIME_FACTOR = 1;
     private final static int EAT_TIME_FACTOR = 1;
@@ -171,24 +104,24 @@ class Philosopher extends Thread {
         }
     }
 
-    private void takeForks() {
+    // returns false if the philosopher was interrupted while waiting, without holding any fork
+    private boolean takeForks() {
         philoState = PhiloState.HUNGRY;
         table.notifyStateChange(this);
 
         ForkManager mgr = table.getForkManager();
-        mgr.acquireFork(id);
         try {
-            Thread.sleep(500);
+            mgr.acquireBoth(id, mgr.right(id));
+            return true;
         } catch (InterruptedException e) {
             System.err.println("Interrupted: " + e.getMessage());
+            return false;
         }
-        mgr.acquireFork(mgr.right(id));
     }
 
     private void putForks() {
         ForkManager mgr = table.getForkManager();
-        mgr.releaseFork(id);
-        mgr.releaseFork(mgr.right(id));
+        mgr.releaseBoth(id, mgr.right(id));
 
     }
 
@@ -196,9 +129,10 @@ class Philosopher extends Thread {
     public void run() {
         while (true) {
             think();
-            takeForks();
-            eat();
-            putForks();
+            if (takeForks()) {
+                eat();
+                putForks();
+            }
         }
     }
 